@@ -0,0 +1,241 @@
+import java.util.List;
+
+/**
+ * The augmenting path loop behind EDMONDS_KARP and CAPACITY_SCALING: find
+ * a shortest path with a BFS, push its bottleneck, repeat.
+ *
+ * Everything a search needs is allocated once, up front: the edges out of
+ * each node as an array indexed by node id, the BFS queues, the edge each
+ * node was reached by, and its distance. Instead of clearing the per-node
+ * arrays before every search, each search bumps an epoch and a node counts
+ * as seen only if its stamp equals the current epoch. The bottleneck is
+ * taken while walking the tree edges back from the sink and the flow is
+ * pushed on a second walk, so no path is ever built. After setup, searching
+ * and augmenting allocate nothing.
+ *
+ * The tree edges stay valid for as long as the FlowGraph's edges don't
+ * change, so one instance can serve every round of capacity scaling.
+ */
+class AugmentingPaths<T> {
+    private final FlowGraph<T> g;
+    private final FlowGraph.PathSearch pathSearch;
+    private final int n;
+    private final FlowEdge<T>[][] adjacency;
+
+    // source side: the edge each node was reached by and its distance
+    private final FlowEdge<T>[] prev;
+    private final int[] sourceDistance;
+    private final int[] sourceSeen;
+    private final int[] sourceQueue;
+
+    // sink side, bidirectional only: the edges into each node, and the
+    // edge each node leaves by
+    private final FlowEdge<T>[][] inEdges;
+    private final FlowEdge<T>[] next;
+    private final int[] sinkDistance;
+    private final int[] sinkSeen;
+    private final int[] sinkQueue;
+
+    private int epoch;
+    private int meeting;
+    private long searches;
+    private long nodesVisited;
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    AugmentingPaths(FlowGraph<T> g, FlowGraph.PathSearch pathSearch) {
+        this.g = g;
+        this.pathSearch = pathSearch;
+        NodeIndex<T> index = g.index();
+        n = index.size();
+        adjacency = new FlowEdge[n][];
+        for (int u = 0; u < n; u++) {
+            adjacency[u] = g.getEdges(index.node(u)).toArray(new FlowEdge[0]);
+        }
+
+        prev = new FlowEdge[n];
+        sourceDistance = new int[n];
+        sourceSeen = new int[n];
+        sourceQueue = new int[n];
+        boolean bidirectional = pathSearch == FlowGraph.PathSearch.BIDIRECTIONAL;
+        inEdges = bidirectional ? new FlowEdge[n][] : null;
+        if (bidirectional) {
+            List<List<FlowEdge<T>>> in = g.inEdges();
+            for (int u = 0; u < n; u++) {
+                inEdges[u] = in.get(u).toArray(new FlowEdge[0]);
+            }
+        }
+        next = bidirectional ? new FlowEdge[n] : null;
+        sinkDistance = bidirectional ? new int[n] : null;
+        sinkSeen = bidirectional ? new int[n] : null;
+        sinkQueue = bidirectional ? new int[n] : null;
+    }
+
+    /**
+     * Augment along shortest paths whose every edge has at least
+     * +minResidual+ capacity left until there are none.
+     */
+    void augment(T source, T sink, int minResidual) {
+        searches = 0;
+        nodesVisited = 0;
+        int s = g.index().id(source);
+        int t = g.index().id(sink);
+        if (s < 0 || t < 0 || s == t) {
+            searches++;
+            return;
+        }
+
+        while (search(s, t, minResidual)) {
+            int flow = Integer.MAX_VALUE;
+            for (int u = meeting; u != s; u = prev[u].sourceId) {
+                flow = Math.min(flow, g.residual(prev[u]));
+            }
+            for (int u = meeting; u != t; u = next[u].sinkId) {
+                flow = Math.min(flow, g.residual(next[u]));
+            }
+
+            for (int u = meeting; u != s; u = prev[u].sourceId) {
+                g.push(prev[u], flow);
+            }
+            for (int u = meeting; u != t; u = next[u].sinkId) {
+                g.push(next[u], flow);
+            }
+        }
+    }
+
+    /**
+     * How many searches the last augment ran, including the final one
+     * that found nothing.
+     */
+    long searches() {
+        return searches;
+    }
+
+    /**
+     * How many nodes those searches visited in total.
+     */
+    long nodesVisited() {
+        return nodesVisited;
+    }
+
+    /**
+     * Look for a path, leaving it as the tree edges from +s+ to +meeting+ in
+     * prev and, when searching from both ends, from +meeting+ to +t+ in
+     * next. Returns false if there is none.
+     */
+    private boolean search(int s, int t, int minResidual) {
+        searches++;
+        epoch++;
+        if (pathSearch == FlowGraph.PathSearch.BIDIRECTIONAL) {
+            return searchBidirectional(s, t, minResidual);
+        }
+        return searchForward(s, t, minResidual);
+    }
+
+    /**
+     * BFS from +s+ until it reaches +t+.
+     */
+    private boolean searchForward(int s, int t, int minResidual) {
+        sourceSeen[s] = epoch;
+        nodesVisited++;
+        int head = 0;
+        int tail = 0;
+        sourceQueue[tail++] = s;
+        while (head < tail) {
+            for (FlowEdge<T> e : adjacency[sourceQueue[head++]]) {
+                int v = e.sinkId;
+                if (sourceSeen[v] == epoch || g.residual(e) < minResidual) {
+                    continue;
+                }
+                sourceSeen[v] = epoch;
+                prev[v] = e;
+                nodesVisited++;
+                if (v == t) {
+                    meeting = t;
+                    return true;
+                }
+                sourceQueue[tail++] = v;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * BFS from both ends, a whole level at a time on whichever side has the
+     * smaller frontier, until they meet. Of all the nodes where they meet on
+     * that level, the one with the shortest total distance is kept, so the
+     * path is still a shortest one. Each side's queue holds every node it
+     * reached in BFS order, its frontier being the last level of it.
+     */
+    private boolean searchBidirectional(int s, int t, int minResidual) {
+        sourceSeen[s] = epoch;
+        sourceDistance[s] = 0;
+        sourceQueue[0] = s;
+        int sourceStart = 0;
+        int sourceEnd = 1;
+
+        sinkSeen[t] = epoch;
+        sinkDistance[t] = 0;
+        sinkQueue[0] = t;
+        int sinkStart = 0;
+        int sinkEnd = 1;
+        nodesVisited += 2;
+
+        while (sourceStart < sourceEnd && sinkStart < sinkEnd) {
+            meeting = -1;
+            if (sourceEnd - sourceStart <= sinkEnd - sinkStart) {
+                int end = expand(sourceQueue, sourceStart, sourceEnd, true, minResidual);
+                sourceStart = sourceEnd;
+                sourceEnd = end;
+            }
+            else {
+                int end = expand(sinkQueue, sinkStart, sinkEnd, false, minResidual);
+                sinkStart = sinkEnd;
+                sinkEnd = end;
+            }
+            if (meeting >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Grow one side by a level, appending the nodes found after the
+     * frontier +queue+[+start+, +end+) and returning the new end. From the
+     * source side (+forward+) a node is reached over an edge out of the
+     * frontier; from the sink side it's reached when one of its edges into
+     * the frontier has residual capacity. Sets meeting to the node where the
+     * sides met with the shortest total distance, if they did.
+     */
+    private int expand(int[] queue, int start, int end, boolean forward, int minResidual) {
+        FlowEdge<T>[] tree = forward ? prev : next;
+        int[] distance = forward ? sourceDistance : sinkDistance;
+        int[] seen = forward ? sourceSeen : sinkSeen;
+        int[] otherDistance = forward ? sinkDistance : sourceDistance;
+        int[] otherSeen = forward ? sinkSeen : sourceSeen;
+
+        int tail = end;
+        int best = Integer.MAX_VALUE;
+        for (int i = start; i < end; i++) {
+            int u = queue[i];
+            int d = distance[u] + 1;
+            for (FlowEdge<T> e : forward ? adjacency[u] : inEdges[u]) {
+                int v = forward ? e.sinkId : e.sourceId;
+                if (seen[v] == epoch || g.residual(e) < minResidual) {
+                    continue;
+                }
+                seen[v] = epoch;
+                tree[v] = e;
+                distance[v] = d;
+                queue[tail++] = v;
+                nodesVisited++;
+
+                if (otherSeen[v] == epoch && otherDistance[v] < best) {
+                    best = otherDistance[v];
+                    meeting = v;
+                }
+            }
+        }
+        return tail;
+    }
+}
@@ -0,0 +1,285 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Boykov-Kolmogorov max flow over the edges of a FlowGraph.
+ *
+ * Two search trees are grown over residual edges, S from the source and T
+ * towards the sink. When they touch, the path through the touching edge is
+ * augmented. Edges the augmentation saturates cut some nodes off from their
+ * tree (orphans); instead of throwing the trees away like findPath does,
+ * each orphan looks for a new parent in its own tree and only drops out if
+ * it can't find one. The trees therefore survive across augmentations,
+ * which on grid shaped graphs with many short paths is much cheaper than a
+ * BFS from scratch every time.
+ *
+ * Orphans prefer the candidate parent closest to the root. Distances are
+ * cached per node together with the augmentation they were measured at, so
+ * walking a candidate's path to the root stops at the first node already
+ * checked since the last augmentation.
+ */
+class BoykovKolmogorov<T> {
+    private static final int FREE = 0;
+    private static final int S = 1;
+    private static final int T = 2;
+    private static final int NONE = -1;
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    private final FlowGraph<T> g;
+    private final NodeIndex<T> index;
+    private final List<List<FlowEdge<T>>> adjacency = new ArrayList<>();
+    private int[][] targets;
+    // the edges into each node, which the T tree grows along backwards
+    private final List<List<FlowEdge<T>>> inEdges;
+
+    private int n;
+    private int source;
+    private int sink;
+    private int[] tree;
+    private int[] parent;
+    private List<FlowEdge<T>> parentEdge;
+    private int[] timestamp;
+    private int[] dist;
+    private int time;
+
+    private Deque<Integer> active = new ArrayDeque<>();
+    private boolean[] isActive;
+    private Deque<Integer> orphans = new ArrayDeque<>();
+
+    BoykovKolmogorov(FlowGraph<T> g) {
+        this.g = g;
+        index = g.index();
+        n = index.size();
+        for (int u = 0; u < n; u++) {
+            adjacency.add(new ArrayList<>(g.getEdges(index.node(u))));
+        }
+        targets = new int[n][];
+        for (int u = 0; u < n; u++) {
+            List<FlowEdge<T>> out = adjacency.get(u);
+            targets[u] = new int[out.size()];
+            for (int i = 0; i < out.size(); i++) {
+                targets[u][i] = out.get(i).sinkId;
+            }
+        }
+        inEdges = g.inEdges();
+    }
+
+    int maxFlow(T source, T sink) {
+        if (source.equals(sink) || index.id(source) < 0 || index.id(sink) < 0) {
+            return g.outflow(source);
+        }
+        this.source = index.id(source);
+        this.sink = index.id(sink);
+
+        tree = new int[n];
+        parent = new int[n];
+        parentEdge = new ArrayList<>(n);
+        timestamp = new int[n];
+        dist = new int[n];
+        isActive = new boolean[n];
+        for (int u = 0; u < n; u++) {
+            parent[u] = NONE;
+            parentEdge.add(null);
+        }
+        tree[this.source] = S;
+        tree[this.sink] = T;
+        activate(this.source);
+        activate(this.sink);
+        time = 1;
+        timestamp[this.source] = time;
+        timestamp[this.sink] = time;
+
+        while (true) {
+            FlowEdge<T> meeting = grow();
+            if (meeting == null) {
+                break;
+            }
+            augment(meeting);
+            adopt();
+        }
+        return g.outflow(source);
+    }
+
+    /**
+     * Grow the trees from their active nodes until they touch. Returns the
+     * residual edge leading from the S tree into the T tree, or null once
+     * neither tree can grow any further.
+     */
+    private FlowEdge<T> grow() {
+        while (!active.isEmpty()) {
+            int p = active.peekFirst();
+            if (tree[p] == FREE) {
+                active.removeFirst();
+                isActive[p] = false;
+                continue;
+            }
+
+            // the edges in the direction this tree grows in: out of p for
+            // S, into p for T
+            List<FlowEdge<T>> treeEdges = tree[p] == S ? adjacency.get(p) : inEdges.get(p);
+            for (int i = 0; i < treeEdges.size(); i++) {
+                FlowEdge<T> treeEdge = treeEdges.get(i);
+                if (g.residual(treeEdge) <= 0) {
+                    continue;
+                }
+
+                int q = tree[p] == S ? treeEdge.sinkId : treeEdge.sourceId;
+                if (tree[q] == FREE) {
+                    tree[q] = tree[p];
+                    parent[q] = p;
+                    parentEdge.set(q, treeEdge);
+                    timestamp[q] = timestamp[p];
+                    dist[q] = dist[p] + 1;
+                    activate(q);
+                }
+                else if (tree[q] != tree[p]) {
+                    // p stays at the front of the queue so growth picks up
+                    // where it left off once this path is augmented
+                    return treeEdge;
+                }
+            }
+            active.removeFirst();
+            isActive[p] = false;
+        }
+        return null;
+    }
+
+    /**
+     * Push the bottleneck along source ~> +meeting+ ~> sink and orphan
+     * every node whose edge to its parent got saturated.
+     */
+    private void augment(FlowEdge<T> meeting) {
+        int from = meeting.sourceId;
+        int to = meeting.sinkId;
+
+        int flow = g.residual(meeting);
+        for (int u = from; u != source; u = parent[u]) {
+            flow = Math.min(flow, g.residual(parentEdge.get(u)));
+        }
+        for (int u = to; u != sink; u = parent[u]) {
+            flow = Math.min(flow, g.residual(parentEdge.get(u)));
+        }
+
+        g.push(meeting, flow);
+        for (int u = from; u != source; ) {
+            int next = parent[u];
+            g.push(parentEdge.get(u), flow);
+            if (g.residual(parentEdge.get(u)) == 0) {
+                orphan(u);
+            }
+            u = next;
+        }
+        for (int u = to; u != sink; ) {
+            int next = parent[u];
+            g.push(parentEdge.get(u), flow);
+            if (g.residual(parentEdge.get(u)) == 0) {
+                orphan(u);
+            }
+            u = next;
+        }
+    }
+
+    /**
+     * Find each orphan a new parent in its own tree, or free it and orphan
+     * its children in turn.
+     */
+    private void adopt() {
+        time++;
+        timestamp[source] = time;
+        timestamp[sink] = time;
+
+        while (!orphans.isEmpty()) {
+            int o = orphans.removeFirst();
+            List<FlowEdge<T>> out = adjacency.get(o);
+            // the edges from a parent q down to o in this tree's direction:
+            // q -> o for S, o -> q for T
+            List<FlowEdge<T>> treeEdges = tree[o] == S ? inEdges.get(o) : out;
+
+            int bestParent = NONE;
+            FlowEdge<T> bestEdge = null;
+            int bestDist = INFINITE;
+            for (int i = 0; i < treeEdges.size(); i++) {
+                FlowEdge<T> treeEdge = treeEdges.get(i);
+                int q = tree[o] == S ? treeEdge.sourceId : treeEdge.sinkId;
+                if (tree[q] != tree[o]) {
+                    continue;
+                }
+                if (g.residual(treeEdge) <= 0) {
+                    continue;
+                }
+                int d = distanceToRoot(q);
+                if (d < bestDist) {
+                    bestDist = d;
+                    bestParent = q;
+                    bestEdge = treeEdge;
+                }
+            }
+
+            if (bestParent != NONE) {
+                parent[o] = bestParent;
+                parentEdge.set(o, bestEdge);
+                timestamp[o] = time;
+                dist[o] = bestDist + 1;
+                continue;
+            }
+
+            // no way back to the root, o leaves the tree: the neighbours
+            // that could have been its parent get to grow into the gap,
+            // and its children are orphans now
+            for (int i = 0; i < treeEdges.size(); i++) {
+                FlowEdge<T> treeEdge = treeEdges.get(i);
+                int q = tree[o] == S ? treeEdge.sourceId : treeEdge.sinkId;
+                if (tree[q] == tree[o] && g.residual(treeEdge) > 0) {
+                    activate(q);
+                }
+            }
+            for (int i = 0; i < out.size(); i++) {
+                int q = targets[o][i];
+                if (tree[q] == tree[o] && parent[q] == o) {
+                    orphan(q);
+                }
+            }
+            tree[o] = FREE;
+        }
+    }
+
+    /**
+     * How far +q+ is from its tree's root, or INFINITE if the walk up hits
+     * an orphan. Every node passed on the way gets its distance stamped
+     * with the current time so the next walk can stop there.
+     */
+    private int distanceToRoot(int q) {
+        int d = 0;
+        int u = q;
+        while (timestamp[u] != time) {
+            if (parent[u] == NONE) {
+                return INFINITE;
+            }
+            u = parent[u];
+            d++;
+        }
+        d += dist[u];
+
+        int stamped = d;
+        for (u = q; timestamp[u] != time; u = parent[u]) {
+            timestamp[u] = time;
+            dist[u] = stamped--;
+        }
+        return d;
+    }
+
+    private void orphan(int u) {
+        parent[u] = NONE;
+        parentEdge.set(u, null);
+        orphans.addLast(u);
+    }
+
+    private void activate(int u) {
+        if (!isActive[u]) {
+            isActive[u] = true;
+            active.addLast(u);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * IntCsrStorage in IntColumns, off the Java heap.
+ */
+class ColumnCsr implements IntCsrStorage {
+    private final IntColumn offsets;
+    private final IntColumn targets;
+    private final IntColumn capacities;
+    private final IntColumn flows;
+    private final IntColumn reverse;
+
+    ColumnCsr(IntColumn offsets, IntColumn targets, IntColumn capacities, IntColumn flows, IntColumn reverse) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.capacities = capacities;
+        this.flows = flows;
+        this.reverse = reverse;
+    }
+
+    public int nodeCount() {
+        return offsets.length() - 1;
+    }
+
+    public int arcCount() {
+        return targets.length();
+    }
+
+    public int firstArc(int u) {
+        return offsets.get(u);
+    }
+
+    public int target(int arc) {
+        return targets.get(arc);
+    }
+
+    public int capacity(int arc) {
+        return capacities.get(arc);
+    }
+
+    public int flow(int arc) {
+        return flows.get(arc);
+    }
+
+    public int reverse(int arc) {
+        return reverse.get(arc);
+    }
+
+    public boolean hasResidual(int arc) {
+        return capacities.get(arc) > flows.get(arc);
+    }
+
+    public void augment(int[] path, int length) {
+        int flow = Integer.MAX_VALUE;
+        for (int i = 0; i < length; i++) {
+            flow = Math.min(flow, capacities.get(path[i]) - flows.get(path[i]));
+        }
+        for (int i = 0; i < length; i++) {
+            int arc = path[i];
+            flows.set(arc, flows.get(arc) + flow);
+            flows.set(reverse.get(arc), flows.get(reverse.get(arc)) - flow);
+        }
+    }
+
+    public int outflow(int u) {
+        int sum = 0;
+        for (int arc = offsets.get(u); arc < offsets.get(u + 1); arc++) {
+            sum += flows.get(arc);
+        }
+        return sum;
+    }
+
+    public void clearFlows() {
+        flows.clear();
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.Arrays;
+
+/**
+ * Dinic's algorithm over a CsrStorage: a BFS per phase to label every node
+ * with its level, then a blocking flow along arcs one level deeper, with a
+ * current-arc pointer per node. The same algorithm as Dinic, but nodes and
+ * arcs are plain ints, so nothing in here hashes, boxes or allocates once
+ * the per-node arrays are set up. Capacities are whatever type the storage
+ * keeps; this class never sees them.
+ */
+class CsrDinic {
+    private final CsrStorage arcs;
+    private final int n;
+    private final int[] level;
+    private final int[] currentArc;
+    private final int[] queue;
+    private final int[] path;
+
+    CsrDinic(CsrStorage arcs) {
+        this.arcs = arcs;
+        n = arcs.nodeCount();
+        level = new int[n];
+        currentArc = new int[n];
+        queue = new int[n];
+        path = new int[n];
+    }
+
+    /**
+     * Push a max flow from +s+ to +t+ on top of whatever flow the arcs
+     * already carry. The storage has the value, as the flow out of +s+.
+     */
+    void maxFlow(int s, int t) {
+        if (s == t) {
+            return;
+        }
+        while (buildLevels(s, t)) {
+            for (int u = 0; u < n; u++) {
+                currentArc[u] = arcs.firstArc(u);
+            }
+            while (augment(s, t)) {
+            }
+        }
+    }
+
+    /**
+     * BFS over arcs with residual capacity from +s+, recording each node's
+     * level. Returns false once +t+ can no longer be reached.
+     */
+    private boolean buildLevels(int s, int t) {
+        Arrays.fill(level, -1);
+        level[s] = 0;
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = s;
+        while (head < tail) {
+            int u = queue[head++];
+            int end = arcs.firstArc(u + 1);
+            for (int arc = arcs.firstArc(u); arc < end; arc++) {
+                int v = arcs.target(arc);
+                if (level[v] < 0 && arcs.hasResidual(arc)) {
+                    level[v] = level[u] + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        return level[t] >= 0;
+    }
+
+    /**
+     * Find one path from +s+ to +t+ in the level graph, following and
+     * advancing the current arcs, and push as much as it allows. +path+
+     * holds the arcs taken. Returns false once the flow is blocking.
+     */
+    private boolean augment(int s, int t) {
+        int depth = 0;
+        int u = s;
+        while (u != t) {
+            int end = arcs.firstArc(u + 1);
+            int arc = currentArc[u];
+            for (; arc < end; arc++) {
+                int v = arcs.target(arc);
+                if (level[v] == level[u] + 1 && arcs.hasResidual(arc)) {
+                    break;
+                }
+            }
+            currentArc[u] = arc;
+
+            if (arc < end) {
+                path[depth++] = arc;
+                u = arcs.target(arc);
+                continue;
+            }
+
+            // dead end: take u out of the level graph and step back
+            level[u] = -1;
+            if (depth == 0) {
+                return false;
+            }
+            int back = path[--depth];
+            u = arcs.target(arcs.reverse(back));
+            currentArc[u]++;
+        }
+
+        arcs.augment(path, depth);
+        return true;
+    }
+}
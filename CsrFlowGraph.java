@@ -0,0 +1,114 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A frozen copy of a FlowGraph in compressed sparse row form, made with
+ * FlowGraph.freeze. Nodes keep their ids from the graph's NodeIndex and
+ * the edges out of node u are arcs offsets[u] up to offsets[u + 1], each
+ * with its target node, capacity, current flow and the index of its
+ * residual arc. Nothing in the solver hashes, boxes or follows an object
+ * reference, which is where FlowGraph spends most of its time.
+ *
+ * No edges can be added after freezing, and solving the copy doesn't touch
+ * the FlowGraph it was made from. maxFlow runs Dinic's algorithm, see
+ * CsrDinic.
+ *
+ * The arrays describing the graph are never written after freezing; flows
+ * live in a FlowState. maxFlow uses the graph's own state, which starts
+ * with the flow the FlowGraph had, and isn't thread safe. For solving
+ * several source and sink pairs at once, give each thread a state of its
+ * own from newState. That only needs the graph's NodeIndex to stay as it
+ * is meanwhile: nothing sharing it may intern new nodes.
+ */
+public class CsrFlowGraph<T> {
+    private final NodeIndex<T> index;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] capacities;
+    private final int[] reverse;
+    private final FlowState<T> state;
+
+    CsrFlowGraph(FlowGraph<T> g) {
+        index = g.index();
+        int n = index.size();
+
+        offsets = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            offsets[u + 1] = offsets[u] + g.getEdges(index.node(u)).size();
+        }
+
+        int m = offsets[n];
+        targets = new int[m];
+        capacities = new int[m];
+        int[] flows = new int[m];
+        reverse = new int[m];
+
+        Map<FlowEdge<T>, Integer> arcOf = new HashMap<>();
+        for (int u = 0; u < n; u++) {
+            int arc = offsets[u];
+            for (FlowEdge<T> e : g.getEdges(index.node(u))) {
+                targets[arc] = e.sinkId;
+                capacities[arc] = e.capacity;
+                flows[arc] = e.capacity - g.residual(e);
+                arcOf.put(e, arc);
+                arc++;
+            }
+        }
+        for (Map.Entry<FlowEdge<T>, Integer> arc : arcOf.entrySet()) {
+            reverse[arc.getValue()] = arcOf.get(arc.getKey().residualEdge);
+        }
+
+        state = new FlowState<>(this, new HeapCsr(offsets, targets, capacities, flows, reverse));
+    }
+
+    /**
+     * A state with no flow on any arc, for solving this graph independently
+     * of maxFlow and of every other state.
+     */
+    public FlowState<T> newState() {
+        return new FlowState<>(this, new HeapCsr(offsets, targets, capacities, new int[targets.length], reverse));
+    }
+
+    /**
+     * The id of +node+, or -1 if the graph doesn't have it, which includes
+     * nodes the index only got after freezing.
+     */
+    int id(T node) {
+        int id = index.id(node);
+        return id < nodeCount() ? id : -1;
+    }
+
+    public int nodeCount() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Write the graph's nodes, arcs and capacities to +file+ for
+     * MappedFlowGraph.open; flows aren't saved. Nodes are saved by
+     * their NodeIndex ids.
+     */
+    public void save(Path file) throws IOException {
+        MappedFlowGraph.save(state.arcs(), file);
+    }
+
+    /**
+     * Number of arcs, counting each edge's residual arc.
+     */
+    public int arcCount() {
+        return targets.length;
+    }
+
+    /**
+     * Take the flow off every arc, including any the FlowGraph had when it
+     * was frozen.
+     */
+    public void resetFlows() {
+        state.resetFlows();
+    }
+
+    public int maxFlow(T source, T sink) {
+        return state.maxFlow(source, sink);
+    }
+}
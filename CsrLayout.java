@@ -0,0 +1,71 @@
+/**
+ * The int columns of a compressed sparse row graph, worked out from a list
+ * of edges by counting sort in two passes: offsets, arc targets and reverse
+ * arcs. Edge i becomes arc forward[i] out of its source and the residual
+ * arc reverse[forward[i]] out of its sink; the caller lays out capacities
+ * and flows in whatever type it keeps them by the same indexes.
+ *
+ * The sort itself, layOut, works on IntColumns, so OffHeapFlowGraph's
+ * Builder runs the same code over columns off the heap.
+ */
+class CsrLayout {
+    final int[] offsets;
+    final int[] targets;
+    final int[] reverse;
+    final int[] forward;
+
+    /**
+     * Where layOut put each edge.
+     */
+    interface Placement {
+        /**
+         * Edge +edge+ became arc +arc+ out of its source.
+         */
+        void place(int edge, int arc);
+    }
+
+    /**
+     * Lay out the first +edges+ edges +sources+[i] -> +sinks+[i] over nodes
+     * 0..+nodes+-1.
+     */
+    CsrLayout(int nodes, int[] sources, int[] sinks, int edges) {
+        offsets = new int[nodes + 1];
+        targets = new int[2 * edges];
+        reverse = new int[2 * edges];
+        forward = new int[edges];
+        layOut(nodes, IntColumn.wrap(sources), IntColumn.wrap(sinks), edges, IntColumn.wrap(offsets),
+               IntColumn.wrap(targets), IntColumn.wrap(reverse), (edge, arc) -> forward[edge] = arc);
+    }
+
+    /**
+     * Count the arcs out of each node into +offsets+ (nodes + 1 of them,
+     * all 0), turn the counts into offsets, then fill in +targets+ and
+     * +reverse+ (2 * +edges+ each) and tell +placement+ where each edge
+     * went.
+     */
+    static void layOut(int nodes, IntColumn sources, IntColumn sinks, int edges, IntColumn offsets,
+                       IntColumn targets, IntColumn reverse, Placement placement) {
+        for (int i = 0; i < edges; i++) {
+            offsets.set(sources.get(i) + 1, offsets.get(sources.get(i) + 1) + 1);
+            offsets.set(sinks.get(i) + 1, offsets.get(sinks.get(i) + 1) + 1);
+        }
+        // next[u] is where u's next arc goes
+        int[] next = new int[nodes];
+        for (int u = 0; u < nodes; u++) {
+            offsets.set(u + 1, offsets.get(u + 1) + offsets.get(u));
+            next[u] = offsets.get(u);
+        }
+
+        for (int i = 0; i < edges; i++) {
+            int u = sources.get(i);
+            int v = sinks.get(i);
+            int arc = next[u]++;
+            int residual = next[v]++;
+            targets.set(arc, v);
+            targets.set(residual, u);
+            reverse.set(arc, residual);
+            reverse.set(residual, arc);
+            placement.place(i, arc);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+/**
+ * A graph's arcs in compressed sparse row form, the way CsrDinic reads
+ * them. Nodes are 0..nodeCount()-1 and the arcs out of node u are
+ * firstArc(u) up to firstArc(u + 1). Every edge is two arcs, the edge
+ * itself and its residual arc with capacity 0, each the other's reverse.
+ *
+ * CsrDinic only needs to know which arcs have capacity left and to push
+ * along a path, so those are the only places capacities and flows show
+ * up, and each implementation keeps them in its own primitive type: int
+ * (IntCsrStorage), long (LongCsr) or double (DoubleCsr). Nothing gets
+ * boxed and the engine is the same code for all of them.
+ */
+interface CsrStorage {
+    int nodeCount();
+
+    int arcCount();
+
+    /**
+     * The first arc out of +u+; for u == nodeCount() this is arcCount().
+     */
+    int firstArc(int u);
+
+    int target(int arc);
+
+    /**
+     * The arc going the other way, paired with +arc+ by addEdge.
+     */
+    int reverse(int arc);
+
+    /**
+     * True if more flow fits through +arc+.
+     */
+    boolean hasResidual(int arc);
+
+    /**
+     * Push the bottleneck of the arcs +path+[0] up to +path+[+length+ - 1]
+     * along all of them.
+     */
+    void augment(int[] path, int length);
+
+    /**
+     * Take the flow off every arc.
+     */
+    void clearFlows();
+}
@@ -0,0 +1,175 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Dinic's algorithm over the edges of a FlowGraph.
+ *
+ * Each phase runs one BFS from the source to label every node with its
+ * distance (level), then pushes a blocking flow using only edges that go
+ * exactly one level deeper. Every node keeps a current-arc pointer into its
+ * edge list, so an edge that turned out to be useless is never looked at
+ * again within the same phase. On unit capacity graphs like the ones
+ * AntWorld builds this takes O(E * sqrt(V)).
+ *
+ * Edges with less than minResidual capacity left are treated as saturated,
+ * which lets capacity scaling run its rounds as Dinic phases too.
+ */
+class Dinic<T> {
+    private final FlowGraph<T> g;
+    private final int minResidual;
+    private final NodeIndex<T> index;
+    private final List<List<FlowEdge<T>>> adjacency = new ArrayList<>();
+    private int[][] targets;
+
+    private int n;
+    private int[] level;
+    private int[] currentArc;
+    private int[] queue;
+    private List<FlowEdge<T>> path = new ArrayList<>();
+    private int phases;
+    private long nodesVisited;
+
+    Dinic(FlowGraph<T> g) {
+        this(g, 1);
+    }
+
+    Dinic(FlowGraph<T> g, int minResidual) {
+        this.g = g;
+        this.minResidual = minResidual;
+        index = g.index();
+        n = index.size();
+        for (int u = 0; u < n; u++) {
+            adjacency.add(new ArrayList<>(g.getEdges(index.node(u))));
+        }
+        targets = new int[n][];
+        for (int u = 0; u < n; u++) {
+            List<FlowEdge<T>> out = adjacency.get(u);
+            targets[u] = new int[out.size()];
+            for (int i = 0; i < out.size(); i++) {
+                targets[u][i] = out.get(i).sinkId;
+            }
+        }
+    }
+
+    int maxFlow(T source, T sink) {
+        augmentAll(source, sink);
+        return g.outflow(source);
+    }
+
+    /**
+     * Run phases until +sink+ can't be reached from +source+ any more.
+     */
+    void augmentAll(T source, T sink) {
+        int s = index.id(source);
+        int t = index.id(sink);
+        if (s == t || s < 0 || t < 0) {
+            return;
+        }
+        level = new int[n];
+        currentArc = new int[n];
+        queue = new int[n];
+        while (buildLevels(s, t)) {
+            Arrays.fill(currentArc, 0);
+            while (augment(s, t) > 0) {
+            }
+        }
+    }
+
+    /**
+     * How many level graphs were built, including the last one that didn't
+     * reach the sink.
+     */
+    int phases() {
+        return phases;
+    }
+
+    /**
+     * How many nodes those BFSes labeled in total.
+     */
+    long nodesVisited() {
+        return nodesVisited;
+    }
+
+    /**
+     * BFS over residual edges from +source+, recording each node's level,
+     * or -1 for the ones it doesn't reach. Returns false once +sink+ can no
+     * longer be reached.
+     */
+    private boolean buildLevels(int source, int sink) {
+        phases++;
+        Arrays.fill(level, -1);
+        level[source] = 0;
+
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int u = queue[head++];
+            List<FlowEdge<T>> out = adjacency.get(u);
+            for (int i = 0; i < out.size(); i++) {
+                int v = targets[u][i];
+                if (level[v] < 0 && g.residual(out.get(i)) >= minResidual) {
+                    level[v] = level[u] + 1;
+                    queue[tail++] = v;
+                }
+            }
+        }
+        nodesVisited += tail;
+        return level[sink] >= 0;
+    }
+
+    /**
+     * Find one path from +source+ to +sink+ in the level graph and push as
+     * much flow as it allows. Nodes that turn out to be dead ends are taken
+     * out of the level graph so later searches in this phase skip them.
+     * Returns the amount pushed, or 0 when the flow is blocking.
+     */
+    private int augment(int source, int sink) {
+        path.clear();
+        int u = source;
+        while (u != sink) {
+            int i = advance(u);
+            if (i >= 0) {
+                path.add(adjacency.get(u).get(i));
+                u = targets[u][i];
+                continue;
+            }
+
+            // dead end: retreat one step and move the parent past this edge
+            level[u] = -1;
+            if (path.isEmpty()) {
+                return 0;
+            }
+            u = path.remove(path.size() - 1).sourceId;
+            currentArc[u]++;
+        }
+
+        int flow = Integer.MAX_VALUE;
+        for (int i = 0; i < path.size(); i++) {
+            flow = Math.min(flow, g.residual(path.get(i)));
+        }
+        for (int i = 0; i < path.size(); i++) {
+            g.push(path.get(i), flow);
+        }
+        return flow;
+    }
+
+    /**
+     * Move +u+'s current arc forward to the next edge that still has
+     * residual capacity and leads one level deeper, and return its position
+     * in +u+'s edge list, or -1 if there is none.
+     */
+    private int advance(int u) {
+        List<FlowEdge<T>> out = adjacency.get(u);
+        int i = currentArc[u];
+        while (i < out.size()) {
+            if (level[targets[u][i]] == level[u] + 1 && g.residual(out.get(i)) >= minResidual) {
+                break;
+            }
+            i++;
+        }
+        currentArc[u] = i;
+        return i < out.size() ? i : -1;
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.Arrays;
+
+/**
+ * CsrStorage with double capacities and flows, for DoubleFlowGraph. An arc
+ * only counts as having residual capacity if more than tolerance is left,
+ * so rounding errors in the flows can't keep a saturated arc in play.
+ */
+class DoubleCsr implements CsrStorage {
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] reverse;
+    private final double[] capacities;
+    private final double[] flows;
+    private final double tolerance;
+
+    DoubleCsr(CsrLayout layout, double[] capacities, double[] flows, double tolerance) {
+        offsets = layout.offsets;
+        targets = layout.targets;
+        reverse = layout.reverse;
+        this.capacities = capacities;
+        this.flows = flows;
+        this.tolerance = tolerance;
+    }
+
+    public int nodeCount() {
+        return offsets.length - 1;
+    }
+
+    public int arcCount() {
+        return targets.length;
+    }
+
+    public int firstArc(int u) {
+        return offsets[u];
+    }
+
+    public int target(int arc) {
+        return targets[arc];
+    }
+
+    public int reverse(int arc) {
+        return reverse[arc];
+    }
+
+    double flow(int arc) {
+        return flows[arc];
+    }
+
+    public boolean hasResidual(int arc) {
+        return capacities[arc] - flows[arc] > tolerance;
+    }
+
+    public void augment(int[] path, int length) {
+        double flow = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < length; i++) {
+            flow = Math.min(flow, capacities[path[i]] - flows[path[i]]);
+        }
+        for (int i = 0; i < length; i++) {
+            int arc = path[i];
+            flows[arc] += flow;
+            flows[reverse[arc]] -= flow;
+        }
+    }
+
+    double outflow(int u) {
+        double sum = 0;
+        for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+            sum += flows[arc];
+        }
+        return sum;
+    }
+
+    public void clearFlows() {
+        Arrays.fill(flows, 0);
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.Arrays;
+
+/**
+ * A flow graph with double capacities. Flows are sums and differences of
+ * capacities, so they pick up rounding error in proportion to the
+ * capacities' size: an arc counts as saturated once no more than epsilon
+ * times the largest capacity in the graph is left, and the max flow is only
+ * as exact as that. Scaling every capacity by the same factor scales the
+ * max flow by it too. Edges are kept in primitive arrays as they're
+ * added and laid out in compressed sparse row form (CsrLayout, DoubleCsr)
+ * when maxFlow next runs; maxFlow is Dinic's algorithm, the same CsrDinic
+ * that CsrFlowGraph and OffHeapFlowGraph use, with no boxing anywhere.
+ *
+ * Nodes are numbered by a NodeIndex, which can be shared with other
+ * graphs over the same nodes. Unlike FlowGraph, parallel edges stay
+ * separate. Flow found by one maxFlow carries over to the next, even if
+ * edges were added in between.
+ */
+public class DoubleFlowGraph<T> {
+    public static final double DEFAULT_EPSILON = 1e-9;
+
+    private final NodeIndex<T> index;
+    private final double epsilon;
+    private int[] sources = new int[16];
+    private int[] sinks = new int[16];
+    private double[] capacities = new double[16];
+    private int edges;
+
+    // the last layout and its arcs, for as many edges as there were then
+    private CsrLayout layout;
+    private DoubleCsr arcs;
+    private CsrDinic dinic;
+
+    public DoubleFlowGraph() {
+        this(DEFAULT_EPSILON);
+    }
+
+    public DoubleFlowGraph(double epsilon) {
+        this(epsilon, new NodeIndex<>());
+    }
+
+    public DoubleFlowGraph(double epsilon, NodeIndex<T> index) {
+        if (!(epsilon >= 0)) {
+            throw new IllegalArgumentException("epsilon can't be negative.");
+        }
+        if (index == null) {
+            throw new IllegalArgumentException("index can't be null.");
+        }
+        this.epsilon = epsilon;
+        this.index = index;
+    }
+
+    public double getEpsilon() {
+        return epsilon;
+    }
+
+    public void addEdge(T source, T sink, double capacity) {
+        if (source.equals(sink)) {
+            throw new IllegalArgumentException("source can't equal sink.");
+        }
+        if (edges == sources.length) {
+            sources = Arrays.copyOf(sources, 2 * edges);
+            sinks = Arrays.copyOf(sinks, 2 * edges);
+            capacities = Arrays.copyOf(capacities, 2 * edges);
+        }
+        sources[edges] = index.intern(source);
+        sinks[edges] = index.intern(sink);
+        capacities[edges] = capacity;
+        edges++;
+    }
+
+    /**
+     * Take the flow off every edge, so the next maxFlow starts from
+     * nothing.
+     */
+    public void resetFlows() {
+        if (arcs != null) {
+            arcs.clearFlows();
+        }
+    }
+
+    public double maxFlow(T source, T sink) {
+        int s = index.id(source);
+        int t = index.id(sink);
+        if (s < 0) {
+            return 0;
+        }
+        layOut();
+        if (t >= 0) {
+            dinic.maxFlow(s, t);
+        }
+        return arcs.outflow(s);
+    }
+
+    /**
+     * Lay the arcs out again if edges or nodes were added since the last
+     * time, moving the flow already on the old edges across.
+     */
+    private void layOut() {
+        int n = index.size();
+        if (arcs != null && layout.forward.length == edges && arcs.nodeCount() == n) {
+            return;
+        }
+        CsrLayout next = new CsrLayout(n, sources, sinks, edges);
+        double[] arcCapacities = new double[2 * edges];
+        double[] flows = new double[2 * edges];
+        double maxCapacity = 0;
+        for (int i = 0; i < edges; i++) {
+            maxCapacity = Math.max(maxCapacity, Math.abs(capacities[i]));
+            int arc = next.forward[i];
+            arcCapacities[arc] = capacities[i];
+            if (layout != null && i < layout.forward.length) {
+                flows[arc] = arcs.flow(layout.forward[i]);
+                flows[next.reverse[arc]] = -flows[arc];
+            }
+        }
+        layout = next;
+        arcs = new DoubleCsr(next, arcCapacities, flows, epsilon * maxCapacity);
+        dinic = new CsrDinic(arcs);
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Which engine Engine.AUTO picked for a graph, and the statistics it picked
+ * it from. toString gives a one line summary for logs.
+ *
+ * The rules, in order:
+ *
+ * - fewer than SMALL_GRAPH_EDGES edges: EDMONDS_KARP, there's too little
+ *   work for any engine's setup to pay off.
+ * - average degree of DENSE_DEGREE or more: HIGHEST_LABEL_PUSH_RELABEL,
+ *   which beat everything else by a wide margin on dense worlds like
+ *   world6.txt.
+ * - every capacity 1 and layered (every edge out of a node the source
+ *   reaches goes one BFS level deeper, like source, F, W, M, sink in
+ *   AntWorld): DINIC, which takes O(E * sqrt(V)) there and on AntWorld's
+ *   random worlds runs within about 25% of BOYKOV_KOLMOGOROV either way.
+ * - every capacity 1 otherwise: BOYKOV_KOLMOGOROV, whose search trees
+ *   don't depend on the graph being layered.
+ * - anything else: HIGHEST_LABEL_PUSH_RELABEL, which held up best on
+ *   grids with general capacities.
+ *
+ * Only edges added with addEdge count; the residual edges that come with
+ * them don't. Whether the graph is layered takes a BFS, so it is only
+ * worked out for sparse unit capacity graphs and is false for the rest.
+ */
+public class EngineSelection {
+    public static final int SMALL_GRAPH_EDGES = 200;
+    public static final int DENSE_DEGREE = 32;
+
+    public final FlowGraph.Engine engine;
+    public final String reason;
+    public final int nodes;
+    public final int edges;
+    public final int minCapacity;
+    public final int maxCapacity;
+    public final int maxDegree;
+    public final double averageDegree;
+    public final boolean layered;
+
+    private EngineSelection(FlowGraph.Engine engine, String reason, int nodes, int edges, int minCapacity,
+                            int maxCapacity, int maxDegree, double averageDegree, boolean layered) {
+        this.engine = engine;
+        this.reason = reason;
+        this.nodes = nodes;
+        this.edges = edges;
+        this.minCapacity = minCapacity;
+        this.maxCapacity = maxCapacity;
+        this.maxDegree = maxDegree;
+        this.averageDegree = averageDegree;
+        this.layered = layered;
+    }
+
+    /**
+     * Gather the statistics for +g+ and pick an engine for a max flow out of
+     * +source+.
+     */
+    static <T> EngineSelection select(FlowGraph<T> g, T source) {
+        Map<T, Integer> degree = new HashMap<>();
+        int edges = 0;
+        int minCapacity = Integer.MAX_VALUE;
+        int maxCapacity = 0;
+        for (T node : g.nodes()) {
+            for (FlowEdge<T> e : g.getEdges(node)) {
+                if (e.capacity <= 0) {
+                    continue;
+                }
+                edges++;
+                minCapacity = Math.min(minCapacity, e.capacity);
+                maxCapacity = Math.max(maxCapacity, e.capacity);
+                degree.merge(e.source, 1, Integer::sum);
+                degree.merge(e.sink, 1, Integer::sum);
+            }
+        }
+        if (edges == 0) {
+            minCapacity = 0;
+        }
+
+        int nodes = g.nodes().size();
+        int maxDegree = 0;
+        for (int d : degree.values()) {
+            maxDegree = Math.max(maxDegree, d);
+        }
+        double averageDegree = nodes == 0 ? 0 : 2.0 * edges / nodes;
+        boolean layered = false;
+
+        FlowGraph.Engine engine;
+        String reason;
+        if (edges < SMALL_GRAPH_EDGES) {
+            engine = FlowGraph.Engine.EDMONDS_KARP;
+            reason = "fewer than " + SMALL_GRAPH_EDGES + " edges";
+        }
+        else if (averageDegree >= DENSE_DEGREE) {
+            engine = FlowGraph.Engine.HIGHEST_LABEL_PUSH_RELABEL;
+            reason = "dense, average degree at least " + DENSE_DEGREE;
+        }
+        else if (maxCapacity == 1) {
+            layered = isLayered(g, source);
+            engine = layered ? FlowGraph.Engine.DINIC : FlowGraph.Engine.BOYKOV_KOLMOGOROV;
+            reason = layered ? "sparse, unit capacities, layered" : "sparse, unit capacities, not layered";
+        }
+        else {
+            engine = FlowGraph.Engine.HIGHEST_LABEL_PUSH_RELABEL;
+            reason = "sparse, general capacities";
+        }
+        return new EngineSelection(engine, reason, nodes, edges, minCapacity, maxCapacity, maxDegree,
+                                   averageDegree, layered);
+    }
+
+    /**
+     * True if every real edge out of a node BFS from +source+ reaches goes
+     * exactly one level deeper. Nodes the source can't reach can't carry
+     * any flow, so they don't count.
+     */
+    private static <T> boolean isLayered(FlowGraph<T> g, T source) {
+        NodeIndex<T> index = g.index();
+        int s = index.id(source);
+        if (s < 0) {
+            return true;
+        }
+        int[] level = new int[index.size()];
+        Arrays.fill(level, -1);
+        level[s] = 0;
+        int[] queue = new int[index.size()];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = s;
+        while (head < tail) {
+            int u = queue[head++];
+            for (FlowEdge<T> e : g.getEdges(index.node(u))) {
+                if (e.capacity <= 0) {
+                    continue;
+                }
+                if (level[e.sinkId] < 0) {
+                    level[e.sinkId] = level[u] + 1;
+                    queue[tail++] = e.sinkId;
+                }
+                else if (level[e.sinkId] != level[u] + 1) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public String toString() {
+        return engine + " (" + reason + "): nodes=" + nodes + " edges=" + edges
+            + " capacity=" + minCapacity + ".." + maxCapacity + " maxDegree=" + maxDegree
+            + String.format(" averageDegree=%.2f", averageDegree) + " layered=" + layered;
+    }
+}
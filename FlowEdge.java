@@ -3,6 +3,15 @@ public class FlowEdge <T> {
     public final T sink;
     public final int capacity;
     public FlowEdge<T> residualEdge;
+    // ids of source and sink in the graph's NodeIndex, set by addEdge
+    int sourceId = -1;
+    int sinkId = -1;
+    // flow pushed through this edge so far, negative on residual edges
+    int flow;
+    // set by addEdge on the edge it adds for every edge's residual
+    // capacity, which is then equal to another only if the edges they're
+    // the residual edges of are
+    boolean residual;
         
     public FlowEdge(T source, T sink, int capacity) {
         this.source = source;
@@ -20,11 +29,20 @@ public class FlowEdge <T> {
             return false;
         }
         FlowEdge<?> that = (FlowEdge<?>)o;
+        if (this.residual != that.residual) {
+            return false;
+        }
+        if (residual) {
+            return this.residualEdge.equals(that.residualEdge);
+        }
             
         return this.source.equals(that.source) && this.sink.equals(that.sink) && this.capacity == that.capacity;
     }
 
     public int hashCode() {
+        if (residual) {
+            return residualEdge.hashCode() * 31 + 1;
+        }
         int hash = 17 + source.hashCode();
         hash = hash * 31 + sink.hashCode();
         hash = hash * 31 + capacity;
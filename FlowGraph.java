@@ -1,16 +1,412 @@
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Deque;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.Map;
 import java.util.Set;
 
 public class FlowGraph <T> {
+    /**
+     * The algorithms maxFlow can use. They all return the same value, so
+     * which one is used is purely a matter of speed for the shape of graph.
+     */
+    public enum Engine {
+        /** Shortest augmenting paths, one BFS per path. */
+        EDMONDS_KARP,
+        /** Level graph per phase, blocking flow with current-arc pointers. */
+        DINIC,
+        /** Preflow push-relabel, FIFO active nodes, gap and global relabel. */
+        FIFO_PUSH_RELABEL,
+        /** Preflow push-relabel, highest active node first from per-height buckets. */
+        HIGHEST_LABEL_PUSH_RELABEL,
+        /**
+         * Shortest augmenting paths, but only over edges with at least
+         * delta residual capacity, halving delta from the largest capacity
+         * down to 1. O(E log U) augmentations for capacities up to U.
+         */
+        CAPACITY_SCALING,
+        /** Source and sink search trees kept alive across augmentations. */
+        BOYKOV_KOLMOGOROV,
+        /** Hochbaum's pseudoflow, highest label first; finds the min cut first. */
+        PSEUDOFLOW,
+        /**
+         * Pick one of the others from the shape of the graph on every call,
+         * see EngineSelection. getLastSelection says what was picked and why.
+         */
+        AUTO
+    }
+
+    /**
+     * How EDMONDS_KARP and CAPACITY_SCALING look for each augmenting path.
+     */
+    public enum PathSearch {
+        /** BFS from the source until it touches the sink. */
+        FORWARD,
+        /**
+         * BFS from the source over residual edges and from the sink over
+         * reversed residual edges, a level at a time on whichever side has
+         * the smaller frontier, until they meet.
+         */
+        BIDIRECTIONAL
+    }
+
+    /**
+     * What EDMONDS_KARP and CAPACITY_SCALING do with each search.
+     */
+    public enum Augmentation {
+        /** Augment along the one path the search found, then search again. */
+        SINGLE_PATH,
+        /**
+         * Label every node with its BFS distance, then augment along as
+         * many shortest paths as those levels allow before searching again.
+         * The levels always come from a BFS from the source, whatever the
+         * PathSearch.
+         */
+        ALL_SHORTEST_PATHS
+    }
+
+    /**
+     * What Builder does with edges that have the same source and sink.
+     */
+    public enum ParallelEdges {
+        /** One edge with the capacities added up, as if they ran side by side. */
+        SUM,
+        /** One edge with the largest capacity, for edges that are repeats. */
+        MAX
+    }
+
+    /**
+     * Collects edges and builds a FlowGraph with no parallel edges in it:
+     * all the edges from one node to another become one, with their
+     * capacities combined as getParallelEdges says. addEdge on FlowGraph
+     * itself drops a repeat of an edge with the same capacity, but keeps
+     * one with a different capacity; here the result doesn't depend on the
+     * capacities or the order edges came in.
+     *
+     * Edges are kept as one long per edge, the source id in the high half
+     * and the sink id in the low half, and build sorts those keys with an
+     * LSD radix sort, so coalescing takes O(E) however many edges repeat.
+     *
+     * Edges whose nodes already have ids in the builder's index can go in
+     * all at once through addEdges, which only fills arrays, and a builder
+     * told roughly how many nodes and edges are coming doesn't have to
+     * grow. build sizes every node's edge set for the edges it will hold,
+     * so nothing in the graph it builds grows either.
+     */
+    public static class Builder<T> {
+        private static final int DIGIT_BITS = 16;
+        private static final int DIGITS = 1 << DIGIT_BITS;
+
+        private final NodeIndex<T> index;
+        private ParallelEdges parallelEdges = ParallelEdges.SUM;
+        private long[] keys;
+        private int[] capacities;
+        private int edges;
+
+        public Builder() {
+            this(new NodeIndex<>());
+        }
+
+        /**
+         * A builder with room for about +expectedNodes+ nodes and
+         * +expectedEdges+ edges, counting repeats.
+         */
+        public Builder(int expectedNodes, int expectedEdges) {
+            this(new NodeIndex<>(expectedNodes), expectedEdges);
+        }
+
+        /**
+         * A builder whose graphs number their nodes with +index+.
+         */
+        public Builder(NodeIndex<T> index) {
+            this(index, 16);
+        }
+
+        public Builder(NodeIndex<T> index, int expectedEdges) {
+            if (index == null) {
+                throw new IllegalArgumentException("index can't be null.");
+            }
+            if (expectedEdges < 0) {
+                throw new IllegalArgumentException("expectedEdges can't be negative.");
+            }
+            this.index = index;
+            keys = new long[expectedEdges];
+            capacities = new int[expectedEdges];
+        }
+
+        /**
+         * The index the builder's graphs number their nodes with, for
+         * getting the ids addEdges takes.
+         */
+        public NodeIndex<T> getIndex() {
+            return index;
+        }
+
+        public ParallelEdges getParallelEdges() {
+            return parallelEdges;
+        }
+
+        public void setParallelEdges(ParallelEdges parallelEdges) {
+            if (parallelEdges == null) {
+                throw new IllegalArgumentException("parallelEdges can't be null.");
+            }
+            this.parallelEdges = parallelEdges;
+        }
+
+        public void addEdge(T source, T sink, int capacity) {
+            if (source.equals(sink)) {
+                throw new IllegalArgumentException("source can't equal sink.");
+            }
+            reserve(1);
+            keys[edges] = (long)index.intern(source) << 32 | index.intern(sink);
+            capacities[edges] = capacity;
+            edges++;
+        }
+
+        /**
+         * Add an edge from +sources+[i] to +sinks+[i] with capacity
+         * +capacities+[i] for every i, the nodes given by their ids in
+         * getIndex. Same as calling addEdge on each in turn, without hashing
+         * any nodes.
+         */
+        public void addEdges(int[] sources, int[] sinks, int[] capacities) {
+            if (sources == null || sinks == null || capacities == null) {
+                throw new IllegalArgumentException("sources, sinks and capacities can't be null.");
+            }
+            if (sinks.length != sources.length || capacities.length != sources.length) {
+                throw new IllegalArgumentException("sources, sinks and capacities must be the same length.");
+            }
+            int n = index.size();
+            for (int i = 0; i < sources.length; i++) {
+                if (sources[i] < 0 || sources[i] >= n) {
+                    throw new IllegalArgumentException("no node has id " + sources[i] + ".");
+                }
+                if (sinks[i] < 0 || sinks[i] >= n) {
+                    throw new IllegalArgumentException("no node has id " + sinks[i] + ".");
+                }
+                if (sources[i] == sinks[i]) {
+                    throw new IllegalArgumentException("source can't equal sink.");
+                }
+            }
+
+            reserve(sources.length);
+            for (int i = 0; i < sources.length; i++) {
+                keys[edges + i] = (long)sources[i] << 32 | sinks[i];
+            }
+            System.arraycopy(capacities, 0, this.capacities, edges, capacities.length);
+            edges += sources.length;
+        }
+
+        /**
+         * Make room for +more+ edges.
+         */
+        private void reserve(int more) {
+            if (edges + more > keys.length) {
+                int length = Math.max(edges + more, Math.max(16, 2 * edges));
+                keys = Arrays.copyOf(keys, length);
+                capacities = Arrays.copyOf(capacities, length);
+            }
+        }
+
+        public FlowGraph<T> build() {
+            return build(Engine.EDMONDS_KARP);
+        }
+
+        /**
+         * A graph using +engine+ with one edge for every source and sink
+         * added so far. Summed capacities stop at Integer.MAX_VALUE, and
+         * edges that end up with no capacity are left out: they can't carry
+         * flow, and in FlowGraph a 0 capacity edge would be equal to the
+         * residual edge of the one going the other way.
+         */
+        public FlowGraph<T> build(Engine engine) {
+            long[] sorted = Arrays.copyOf(keys, edges);
+            int[] sortedCapacities = Arrays.copyOf(capacities, edges);
+            sort(sorted, sortedCapacities);
+
+            // coalesce in place, counting the edges each node will have
+            int n = index.size();
+            int[] degrees = new int[n];
+            int coalesced = 0;
+            for (int i = 0; i < edges; ) {
+                long key = sorted[i];
+                long capacity = sortedCapacities[i];
+                for (i++; i < edges && sorted[i] == key; i++) {
+                    if (parallelEdges == ParallelEdges.SUM) {
+                        capacity = Math.min(capacity + sortedCapacities[i], Integer.MAX_VALUE);
+                    }
+                    else {
+                        capacity = Math.max(capacity, sortedCapacities[i]);
+                    }
+                }
+                if (capacity > 0) {
+                    sorted[coalesced] = key;
+                    sortedCapacities[coalesced] = (int)capacity;
+                    coalesced++;
+                    degrees[(int)(key >>> 32)]++;
+                    degrees[(int)key]++;
+                }
+            }
+
+            // every source and sink pair is now unique and no capacity is 0,
+            // so no edge can equal another and they can go straight into
+            // sets sized for them, without the lookups addEdge does
+            FlowGraph<T> g = new FlowGraph<>(engine, index);
+            List<Set<FlowEdge<T>>> out = new ArrayList<>(n);
+            int nodes = 0;
+            for (int u = 0; u < n; u++) {
+                out.add(degrees[u] > 0 ? new HashSet<>(hashCapacity(degrees[u])) : null);
+                nodes += degrees[u] > 0 ? 1 : 0;
+            }
+            g.edges = new HashMap<>(hashCapacity(nodes));
+            for (int u = 0; u < n; u++) {
+                if (out.get(u) != null) {
+                    g.edges.put(index.node(u), out.get(u));
+                }
+            }
+            for (int i = 0; i < coalesced; i++) {
+                int u = (int)(sorted[i] >>> 32);
+                int v = (int)sorted[i];
+                FlowEdge<T> e = new FlowEdge<>(index.node(u), index.node(v), sortedCapacities[i]);
+                FlowEdge<T> re = new FlowEdge<>(index.node(v), index.node(u), 0);
+                e.sourceId = re.sinkId = u;
+                e.sinkId = re.sourceId = v;
+                re.residual = true;
+                e.residualEdge = re;
+                re.residualEdge = e;
+                out.get(u).add(e);
+                out.get(v).add(re);
+            }
+            return g;
+        }
+
+        /**
+         * Sort +keys+, and +values+ along with them, one DIGIT_BITS digit at
+         * a time from the lowest, skipping digits that are 0 in every key.
+         */
+        private static void sort(long[] keys, int[] values) {
+            long bits = 0;
+            for (long key : keys) {
+                bits |= key;
+            }
+
+            long[] keysOut = new long[keys.length];
+            int[] valuesOut = new int[values.length];
+            int[] count = new int[DIGITS + 1];
+            for (int shift = 0; shift < Long.SIZE; shift += DIGIT_BITS) {
+                if ((bits >>> shift & (DIGITS - 1)) == 0) {
+                    continue;
+                }
+                Arrays.fill(count, 0);
+                for (long key : keys) {
+                    count[(int)(key >>> shift & (DIGITS - 1)) + 1]++;
+                }
+                for (int d = 0; d < DIGITS; d++) {
+                    count[d + 1] += count[d];
+                }
+                for (int i = 0; i < keys.length; i++) {
+                    int to = count[(int)(keys[i] >>> shift & (DIGITS - 1))]++;
+                    keysOut[to] = keys[i];
+                    valuesOut[to] = values[i];
+                }
+                System.arraycopy(keysOut, 0, keys, 0, keys.length);
+                System.arraycopy(valuesOut, 0, values, 0, values.length);
+            }
+        }
+    }
+
     private Map<T, Set<FlowEdge<T>>> edges = new HashMap<>();
-    private Map<FlowEdge<T>, Integer> flows = new HashMap<>();
+    private Engine engine;
+    private PathSearch pathSearch = PathSearch.FORWARD;
+    private Augmentation augmentation = Augmentation.SINGLE_PATH;
+    private long pathSearches;
+    private long nodesVisited;
+    private EngineSelection lastSelection;
+    private final NodeIndex<T> index;
+    // scratch space for the augmenting path engines, set up by the first
+    // augment of each maxFlow and reused by the rest
+    private AugmentingPaths<T> paths;
+    // true while the edges hold what maxFlowValue left: a preflow or
+    // pseudoflow, not a flow the next solve could build on
+    private boolean preflow;
+
+    public FlowGraph() {
+        this(Engine.EDMONDS_KARP);
+    }
+
+    public FlowGraph(Engine engine) {
+        this(engine, new NodeIndex<>());
+    }
+
+    /**
+     * A graph that numbers its nodes with +index+, which other graphs over
+     * the same nodes may share.
+     */
+    public FlowGraph(Engine engine, NodeIndex<T> index) {
+        if (index == null) {
+            throw new IllegalArgumentException("index can't be null.");
+        }
+        setEngine(engine);
+        this.index = index;
+    }
+
+    public Engine getEngine() {
+        return engine;
+    }
+
+    public void setEngine(Engine engine) {
+        if (engine == null) {
+            throw new IllegalArgumentException("engine can't be null.");
+        }
+        this.engine = engine;
+    }
+
+    public PathSearch getPathSearch() {
+        return pathSearch;
+    }
+
+    public void setPathSearch(PathSearch pathSearch) {
+        if (pathSearch == null) {
+            throw new IllegalArgumentException("pathSearch can't be null.");
+        }
+        this.pathSearch = pathSearch;
+    }
+
+    public Augmentation getAugmentation() {
+        return augmentation;
+    }
+
+    public void setAugmentation(Augmentation augmentation) {
+        if (augmentation == null) {
+            throw new IllegalArgumentException("augmentation can't be null.");
+        }
+        this.augmentation = augmentation;
+    }
+
+    /**
+     * What AUTO picked on the last maxFlow or maxFlowValue call, or null if
+     * AUTO hasn't run yet.
+     */
+    public EngineSelection getLastSelection() {
+        return lastSelection;
+    }
+
+    /**
+     * How many augmenting path searches the last maxFlow ran, including the
+     * final one that found nothing. Only the augmenting path engines search;
+     * for DINIC and ALL_SHORTEST_PATHS each level graph counts as one.
+     */
+    public long getPathSearches() {
+        return pathSearches;
+    }
+
+    /**
+     * How many nodes those searches visited in total.
+     */
+    public long getNodesVisited() {
+        return nodesVisited;
+    }
 
     public Set<FlowEdge<T>> getEdges(T node) {
         if (edges.containsKey(node)) {
@@ -24,94 +420,268 @@ public class FlowGraph <T> {
             throw new IllegalArgumentException("source can't equal sink.");
         }
         FlowEdge<T> e = new FlowEdge<>(source, sink, capacity);
+        e.sourceId = index.intern(source);
+        e.sinkId = index.intern(sink);
+
+        // an edge equal to one already in the graph is that edge, flow and
+        // all, and so is its residual edge. A second source -> sink edge
+        // with another capacity is a new edge, with a residual edge of its
+        // own, since residual edges are only equal if their edges are
+        e = addEdge(source, e);
         FlowEdge<T> re = new FlowEdge<>(sink, source, 0);
-        e.residualEdge = re;
+        re.sourceId = e.sinkId;
+        re.sinkId = e.sourceId;
+        re.residual = true;
         re.residualEdge = e;
-            
-        addEdge(source, e);
-        addEdge(sink, re);
-
-        flows.put(e, 0);
-        flows.put(re, 0);
+        re = addEdge(sink, re);
+        e.residualEdge = re;
     }
 
-    private void addEdge(T node, FlowEdge<T> e) {
+    /**
+     * Add +e+ to +node+'s edges and return it, or return the equal edge
+     * that's already there.
+     */
+    private FlowEdge<T> addEdge(T node, FlowEdge<T> e) {
         if (!edges.containsKey(node)) {
             edges.put(node, new HashSet<>());
         }
-        edges.get(node).add(e);
+        Set<FlowEdge<T>> out = edges.get(node);
+        if (out.add(e)) {
+            return e;
+        }
+        for (FlowEdge<T> existing : out) {
+            if (existing.equals(e)) {
+                return existing;
+            }
+        }
+        return e;
     }
     
-    public int maxFlow(T source, T sink) {
-        List<FlowEdge<T>> path = findPath(source, sink);
-        while (path != null) {
-            List<Integer> residuals = new ArrayList<>();
-            for (FlowEdge<T> e : path) {
-                residuals.add(e.capacity - flows.get(e));
+    /**
+     * Take the flow off every edge, so the next maxFlow starts from
+     * nothing, as if on a freshly built graph. O(E); for answering many
+     * source and sink pairs on one graph without building it again.
+     */
+    public void resetFlows() {
+        for (Set<FlowEdge<T>> out : edges.values()) {
+            for (FlowEdge<T> e : out) {
+                e.flow = 0;
             }
-            int flow = Collections.min(residuals);
+        }
+        preflow = false;
+    }
+
+    public int maxFlow(T source, T sink) {
+        return maxFlow(resolveEngine(source), source, sink);
+    }
+
+    private int maxFlow(Engine engine, T source, T sink) {
+        discardPreflow();
+        pathSearches = 0;
+        nodesVisited = 0;
+        paths = null;
+        switch (engine) {
+            case DINIC:
+                return dinic(source, sink);
+            case FIFO_PUSH_RELABEL:
+                return new PushRelabel<>(this, PushRelabel.Selection.FIFO).maxFlow(source, sink);
+            case HIGHEST_LABEL_PUSH_RELABEL:
+                return new PushRelabel<>(this, PushRelabel.Selection.HIGHEST_LABEL).maxFlow(source, sink);
+            case CAPACITY_SCALING:
+                return capacityScaling(source, sink);
+            case BOYKOV_KOLMOGOROV:
+                return new BoykovKolmogorov<>(this).maxFlow(source, sink);
+            case PSEUDOFLOW:
+                return new Pseudoflow<>(this).maxFlow(source, sink);
+            default:
+                return edmondsKarp(source, sink);
+        }
+    }
+
+    /**
+     * Same value as maxFlow, for callers that only want the number. The
+     * push-relabel and pseudoflow engines stop as soon as the value is known
+     * and skip turning their preflow (or pseudoflow) back into a flow, so
+     * afterwards the graph's flows don't have to balance at every node.
+     * Since that is no flow to build on, the next maxFlow, maxFlowValue or
+     * freeze starts over from no flow at all, as after resetFlows.
+     */
+    public int maxFlowValue(T source, T sink) {
+        Engine engine = resolveEngine(source);
+        discardPreflow();
+        switch (engine) {
+            case FIFO_PUSH_RELABEL:
+                return new PushRelabel<>(this, PushRelabel.Selection.FIFO).maxPreflow(source, sink);
+            case HIGHEST_LABEL_PUSH_RELABEL:
+                return new PushRelabel<>(this, PushRelabel.Selection.HIGHEST_LABEL).maxPreflow(source, sink);
+            case PSEUDOFLOW:
+                return new Pseudoflow<>(this).minCut(source, sink);
+            default:
+                return maxFlow(engine, source, sink);
+        }
+    }
+
+    /**
+     * Copy the edges added so far, and the flow on them, into an int
+     * indexed CsrFlowGraph. Worth it when the graph is done growing and the
+     * solve dominates; edges added afterwards don't show up in the copy.
+     */
+    public CsrFlowGraph<T> freeze() {
+        discardPreflow();
+        return new CsrFlowGraph<>(this);
+    }
+
+    /**
+     * The engine to run: the configured one, or what AUTO picks for this
+     * graph.
+     */
+    private Engine resolveEngine(T source) {
+        if (engine != Engine.AUTO) {
+            return engine;
+        }
+        lastSelection = EngineSelection.select(this, source);
+        return lastSelection.engine;
+    }
 
-            for (FlowEdge<T> e : path) {
-                int newFlow = flows.get(e) + flow;
-                int backFlow = flows.get(e.residualEdge) - flow;
+    /**
+     * The initial capacity a HashMap or HashSet needs to hold +size+
+     * entries without growing. Never less than the default 16, so a set
+     * sized this way ends up with the same table, and iterates in the same
+     * order, as one grown to +size+.
+     */
+    static int hashCapacity(int size) {
+        return Math.max(16, (int)Math.ceil(size / 0.75));
+    }
 
-                flows.put(e, newFlow);
-                flows.put(e.residualEdge, backFlow);
+    /**
+     * The ids of this graph's nodes. Engines size their per-node arrays by
+     * its size(); ids of nodes another graph sharing the index added just
+     * have no edges here.
+     */
+    NodeIndex<T> index() {
+        return index;
+    }
+
+    /**
+     * The edges into every node, by id, found by going through every
+     * node's edges. Engines that walk the residual graph backwards use
+     * these rather than the residualEdge of each node's own edges.
+     */
+    List<List<FlowEdge<T>>> inEdges() {
+        List<List<FlowEdge<T>>> in = new ArrayList<>(index.size());
+        for (int v = 0; v < index.size(); v++) {
+            in.add(new ArrayList<>());
+        }
+        for (Set<FlowEdge<T>> out : edges.values()) {
+            for (FlowEdge<T> e : out) {
+                in.get(e.sinkId).add(e);
             }
-            path = findPath(source, sink);
         }
-            
+        return in;
+    }
+
+    /**
+     * Every node that has at least one edge, in or out.
+     */
+    Set<T> nodes() {
+        return edges.keySet();
+    }
+
+    /**
+     * Remaining capacity on +e+ given the flow pushed through it so far.
+     */
+    int residual(FlowEdge<T> e) {
+        return e.capacity - e.flow;
+    }
+
+    /**
+     * Push +flow+ units along +e+, taking them back off its residual edge.
+     */
+    void push(FlowEdge<T> e, int flow) {
+        e.flow += flow;
+        e.residualEdge.flow -= flow;
+    }
+
+    /**
+     * Called by an engine that left a preflow or pseudoflow on the edges
+     * instead of a flow.
+     */
+    void markPreflow() {
+        preflow = true;
+    }
+
+    private void discardPreflow() {
+        if (preflow) {
+            resetFlows();
+        }
+    }
+
+    /**
+     * Total flow currently leaving +source+.
+     */
+    int outflow(T source) {
         int sum = 0;
         for (FlowEdge<T> e : getEdges(source)) {
-            sum += flows.get(e);
+            sum += e.flow;
         }
         return sum;
     }
-        
+
     /**
-     * BFS from +source+ to +sink+. At the end of the search walk
-     * backwards through +prev+ starting with sink to 
-     * get the path.
+     * Total flow currently arriving at +sink+. Unlike outflow at the
+     * source, this is the flow value of a preflow too.
      */
-    private List<FlowEdge<T>> findPath(T source, T sink) {
-        if (source == sink) {
-            return null;
-        }
-
-        Map<T, FlowEdge<T>> prev = new HashMap<>();
-        prev.put(source, null);
+    int inflow(T sink) {
+        return -outflow(sink);
+    }
 
-        HashSet<T> visited = new HashSet<>();
-        Deque<T> q = new LinkedList<>();
-        q.addFirst(source);
-        visited.add(source);
+    private int edmondsKarp(T source, T sink) {
+        augment(source, sink, 1);
+        return outflow(source);
+    }
 
-        while (!q.isEmpty()) {
-            T node = q.removeLast();
-            for (FlowEdge<T> e : getEdges(node)) {
-                int residual = e.capacity - flows.get(e);
-                if (residual > 0 && !visited.contains(e.sink)) {
-                    prev.put(e.sink, e);
-                    if (e.sink == sink) {
-                        return toPath(prev, sink);
-                    }
+    private int dinic(T source, T sink) {
+        Dinic<T> dinic = new Dinic<>(this);
+        dinic.augmentAll(source, sink);
+        pathSearches += dinic.phases();
+        nodesVisited += dinic.nodesVisited();
+        return outflow(source);
+    }
 
-                    visited.add(e.sink);
-                    q.addFirst(e.sink);
-                }
+    private int capacityScaling(T source, T sink) {
+        int maxCapacity = 0;
+        for (Set<FlowEdge<T>> out : edges.values()) {
+            for (FlowEdge<T> e : out) {
+                maxCapacity = Math.max(maxCapacity, e.capacity);
             }
         }
-        return null;
+
+        for (int delta = Integer.highestOneBit(maxCapacity); delta > 0; delta /= 2) {
+            augment(source, sink, delta);
+        }
+        return outflow(source);
     }
 
-    private List<FlowEdge<T>> toPath(Map<T, FlowEdge<T>> prev, T sink) {
-        LinkedList<FlowEdge<T>> path = new LinkedList<>();
-        FlowEdge<T> e = null;
-        while ((e = prev.get(sink)) != null) {
-            path.addFirst(e);
-            sink = e.source;
+    /**
+     * Augment along shortest paths whose every edge has at least
+     * +minResidual+ capacity left until there are none.
+     */
+    private void augment(T source, T sink, int minResidual) {
+        if (augmentation == Augmentation.ALL_SHORTEST_PATHS) {
+            // one level graph per search, which is what a Dinic phase is
+            Dinic<T> dinic = new Dinic<>(this, minResidual);
+            dinic.augmentAll(source, sink);
+            pathSearches += dinic.phases();
+            nodesVisited += dinic.nodesVisited();
+            return;
+        }
+
+        if (paths == null) {
+            paths = new AugmentingPaths<>(this, pathSearch);
         }
-        return path;
+        paths.augment(source, sink, minResidual);
+        pathSearches += paths.searches();
+        nodesVisited += paths.nodesVisited();
     }
 }
     
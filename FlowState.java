@@ -0,0 +1,51 @@
+/**
+ * The flow on a CsrFlowGraph's arcs for one solve, kept apart from the
+ * graph so many solves can share it. Made with CsrFlowGraph.newState,
+ * starting with no flow at all, and holding only what a solve writes: a
+ * flow per arc and CsrDinic's per-node scratch arrays.
+ *
+ * A state is not thread safe, but the graph is never written after it's
+ * frozen, so any number of threads can each solve their own state over
+ * one graph at the same time.
+ */
+public class FlowState<T> {
+    private final CsrFlowGraph<T> graph;
+    private final HeapCsr arcs;
+    private final CsrDinic dinic;
+
+    FlowState(CsrFlowGraph<T> graph, HeapCsr arcs) {
+        this.graph = graph;
+        this.arcs = arcs;
+        dinic = new CsrDinic(arcs);
+    }
+
+    public CsrFlowGraph<T> getGraph() {
+        return graph;
+    }
+
+    HeapCsr arcs() {
+        return arcs;
+    }
+
+    /**
+     * Take the flow off every arc, so the state can be used for another
+     * solve as if new.
+     */
+    public void resetFlows() {
+        arcs.clearFlows();
+    }
+
+    /**
+     * Push a max flow from +source+ to +sink+ on top of the flow already
+     * in this state and return the total flow out of +source+.
+     */
+    public int maxFlow(T source, T sink) {
+        int s = graph.id(source);
+        int t = graph.id(sink);
+        if (s < 0 || t < 0) {
+            return s < 0 ? 0 : arcs.outflow(s);
+        }
+        dinic.maxFlow(s, t);
+        return arcs.outflow(s);
+    }
+}
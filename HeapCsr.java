@@ -0,0 +1,76 @@
+import java.util.Arrays;
+
+/**
+ * IntCsrStorage in plain int arrays, one per column.
+ */
+class HeapCsr implements IntCsrStorage {
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] capacities;
+    private final int[] flows;
+    private final int[] reverse;
+
+    HeapCsr(int[] offsets, int[] targets, int[] capacities, int[] flows, int[] reverse) {
+        this.offsets = offsets;
+        this.targets = targets;
+        this.capacities = capacities;
+        this.flows = flows;
+        this.reverse = reverse;
+    }
+
+    public int nodeCount() {
+        return offsets.length - 1;
+    }
+
+    public int arcCount() {
+        return targets.length;
+    }
+
+    public int firstArc(int u) {
+        return offsets[u];
+    }
+
+    public int target(int arc) {
+        return targets[arc];
+    }
+
+    public int capacity(int arc) {
+        return capacities[arc];
+    }
+
+    public int flow(int arc) {
+        return flows[arc];
+    }
+
+    public int reverse(int arc) {
+        return reverse[arc];
+    }
+
+    public boolean hasResidual(int arc) {
+        return capacities[arc] > flows[arc];
+    }
+
+    public void augment(int[] path, int length) {
+        int flow = Integer.MAX_VALUE;
+        for (int i = 0; i < length; i++) {
+            flow = Math.min(flow, capacities[path[i]] - flows[path[i]]);
+        }
+        for (int i = 0; i < length; i++) {
+            int arc = path[i];
+            flows[arc] += flow;
+            flows[reverse[arc]] -= flow;
+        }
+    }
+
+    public int outflow(int u) {
+        int sum = 0;
+        for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+            sum += flows[arc];
+        }
+        return sum;
+    }
+
+    public void clearFlows() {
+        Arrays.fill(flows, 0);
+    }
+}
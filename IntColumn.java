@@ -0,0 +1,110 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An int array outside the Java heap, in direct ByteBuffers of up to
+ * CHUNK ints each so a column isn't held to a single buffer's 2 GiB. The
+ * garbage collector only ever sees the buffer objects, never the data, so
+ * its work doesn't grow with the column.
+ *
+ * A column can also be mapped from a file, see map. Either way the memory
+ * is released when the column becomes unreachable and its buffers are
+ * collected. wrap puts a column over an ordinary int array instead, so
+ * code written for columns works on arrays too.
+ */
+class IntColumn {
+    static final int CHUNK_BITS = 26;
+    static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK - 1;
+
+    private final IntBuffer[] chunks;
+    private final int length;
+
+    /**
+     * A column of +length+ zeros.
+     */
+    IntColumn(int length) {
+        this.length = length;
+        chunks = new IntBuffer[(int)(((long)length + CHUNK - 1) >>> CHUNK_BITS)];
+        for (int i = 0; i < chunks.length; i++) {
+            int ints = Math.min(CHUNK, length - i * CHUNK);
+            chunks[i] = ByteBuffer.allocateDirect(ints * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+    }
+
+    private IntColumn(IntBuffer[] chunks, int length) {
+        this.chunks = chunks;
+        this.length = length;
+    }
+
+    /**
+     * A column over +length+ little endian ints of +channel+'s file,
+     * starting at byte +position+, mapped a chunk at a time. Nothing is read
+     * until it's used, and with MapMode.READ_WRITE sets go to the file.
+     */
+    static IntColumn map(FileChannel channel, FileChannel.MapMode mode, long position, int length)
+        throws IOException {
+        IntBuffer[] chunks = new IntBuffer[(int)(((long)length + CHUNK - 1) >>> CHUNK_BITS)];
+        for (int i = 0; i < chunks.length; i++) {
+            int ints = Math.min(CHUNK, length - i * CHUNK);
+            long start = position + (long)i * CHUNK * Integer.BYTES;
+            chunks[i] = channel.map(mode, start, (long)ints * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+        return new IntColumn(chunks, length);
+    }
+
+    /**
+     * A column over +values+ itself: sets write to the array.
+     */
+    static IntColumn wrap(int[] values) {
+        IntBuffer[] chunks = new IntBuffer[(int)(((long)values.length + CHUNK - 1) >>> CHUNK_BITS)];
+        for (int i = 0; i < chunks.length; i++) {
+            int ints = Math.min(CHUNK, values.length - i * CHUNK);
+            chunks[i] = IntBuffer.wrap(values, i * CHUNK, ints).slice();
+        }
+        return new IntColumn(chunks, values.length);
+    }
+
+    int length() {
+        return length;
+    }
+
+    int get(int i) {
+        return chunks[i >>> CHUNK_BITS].get(i & CHUNK_MASK);
+    }
+
+    void set(int i, int value) {
+        chunks[i >>> CHUNK_BITS].put(i & CHUNK_MASK, value);
+    }
+
+    /**
+     * Set every value to 0. Values that already are 0 aren't written, so
+     * the pages of a column mapped from a sparse file stay unallocated
+     * where nothing was ever set.
+     */
+    void clear() {
+        for (int i = 0; i < length; i++) {
+            if (get(i) != 0) {
+                set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * A column of +length+ holding this one's values, then zeros, for
+     * growing a column that filled up.
+     */
+    IntColumn copyOf(int length) {
+        IntColumn copy = new IntColumn(length);
+        int ints = Math.min(this.length, length);
+        for (int i = 0; i < copy.chunks.length && i * CHUNK < ints; i++) {
+            IntBuffer from = chunks[i].duplicate();
+            from.position(0).limit(Math.min(CHUNK, ints - i * CHUNK));
+            copy.chunks[i].duplicate().put(from);
+        }
+        return copy;
+    }
+}
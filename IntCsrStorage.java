@@ -0,0 +1,17 @@
+/**
+ * CsrStorage with int capacities and flows, which is what FlowGraph,
+ * OffHeapFlowGraph and the on-disk format hold.
+ */
+interface IntCsrStorage extends CsrStorage {
+    int capacity(int arc);
+
+    /**
+     * Flow on +arc+ so far, negative on a residual arc carrying flow back.
+     */
+    int flow(int arc);
+
+    /**
+     * Total flow on the arcs out of +u+.
+     */
+    int outflow(int u);
+}
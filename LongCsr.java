@@ -0,0 +1,72 @@
+import java.util.Arrays;
+
+/**
+ * CsrStorage with long capacities and flows, for LongFlowGraph.
+ */
+class LongCsr implements CsrStorage {
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] reverse;
+    private final long[] capacities;
+    private final long[] flows;
+
+    LongCsr(CsrLayout layout, long[] capacities, long[] flows) {
+        offsets = layout.offsets;
+        targets = layout.targets;
+        reverse = layout.reverse;
+        this.capacities = capacities;
+        this.flows = flows;
+    }
+
+    public int nodeCount() {
+        return offsets.length - 1;
+    }
+
+    public int arcCount() {
+        return targets.length;
+    }
+
+    public int firstArc(int u) {
+        return offsets[u];
+    }
+
+    public int target(int arc) {
+        return targets[arc];
+    }
+
+    public int reverse(int arc) {
+        return reverse[arc];
+    }
+
+    long flow(int arc) {
+        return flows[arc];
+    }
+
+    public boolean hasResidual(int arc) {
+        return capacities[arc] > flows[arc];
+    }
+
+    public void augment(int[] path, int length) {
+        long flow = Long.MAX_VALUE;
+        for (int i = 0; i < length; i++) {
+            flow = Math.min(flow, capacities[path[i]] - flows[path[i]]);
+        }
+        for (int i = 0; i < length; i++) {
+            int arc = path[i];
+            flows[arc] += flow;
+            flows[reverse[arc]] -= flow;
+        }
+    }
+
+    long outflow(int u) {
+        long sum = 0;
+        for (int arc = offsets[u]; arc < offsets[u + 1]; arc++) {
+            sum += flows[arc];
+        }
+        return sum;
+    }
+
+    public void clearFlows() {
+        Arrays.fill(flows, 0);
+    }
+}
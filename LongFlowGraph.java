@@ -0,0 +1,100 @@
+import java.util.Arrays;
+
+/**
+ * A flow graph with long capacities, for networks whose capacities or max
+ * flow don't fit in an int. Edges are kept in primitive arrays as they're
+ * added and laid out in compressed sparse row form (CsrLayout, LongCsr)
+ * when maxFlow next runs; maxFlow is Dinic's algorithm, the same CsrDinic
+ * that CsrFlowGraph and OffHeapFlowGraph use, with no boxing anywhere.
+ *
+ * Nodes are numbered by a NodeIndex, which can be shared with other
+ * graphs over the same nodes. Unlike FlowGraph, parallel edges stay
+ * separate. Flow found by one maxFlow carries over to the next, even if
+ * edges were added in between.
+ */
+public class LongFlowGraph<T> {
+    private final NodeIndex<T> index;
+    private int[] sources = new int[16];
+    private int[] sinks = new int[16];
+    private long[] capacities = new long[16];
+    private int edges;
+
+    // the last layout and its arcs, for as many edges as there were then
+    private CsrLayout layout;
+    private LongCsr arcs;
+    private CsrDinic dinic;
+
+    public LongFlowGraph() {
+        this(new NodeIndex<>());
+    }
+
+    public LongFlowGraph(NodeIndex<T> index) {
+        if (index == null) {
+            throw new IllegalArgumentException("index can't be null.");
+        }
+        this.index = index;
+    }
+
+    public void addEdge(T source, T sink, long capacity) {
+        if (source.equals(sink)) {
+            throw new IllegalArgumentException("source can't equal sink.");
+        }
+        if (edges == sources.length) {
+            sources = Arrays.copyOf(sources, 2 * edges);
+            sinks = Arrays.copyOf(sinks, 2 * edges);
+            capacities = Arrays.copyOf(capacities, 2 * edges);
+        }
+        sources[edges] = index.intern(source);
+        sinks[edges] = index.intern(sink);
+        capacities[edges] = capacity;
+        edges++;
+    }
+
+    /**
+     * Take the flow off every edge, so the next maxFlow starts from
+     * nothing.
+     */
+    public void resetFlows() {
+        if (arcs != null) {
+            arcs.clearFlows();
+        }
+    }
+
+    public long maxFlow(T source, T sink) {
+        int s = index.id(source);
+        int t = index.id(sink);
+        if (s < 0) {
+            return 0;
+        }
+        layOut();
+        if (t >= 0) {
+            dinic.maxFlow(s, t);
+        }
+        return arcs.outflow(s);
+    }
+
+    /**
+     * Lay the arcs out again if edges or nodes were added since the last
+     * time, moving the flow already on the old edges across.
+     */
+    private void layOut() {
+        int n = index.size();
+        if (arcs != null && layout.forward.length == edges && arcs.nodeCount() == n) {
+            return;
+        }
+        CsrLayout next = new CsrLayout(n, sources, sinks, edges);
+        long[] arcCapacities = new long[2 * edges];
+        long[] flows = new long[2 * edges];
+        for (int i = 0; i < edges; i++) {
+            int arc = next.forward[i];
+            arcCapacities[arc] = capacities[i];
+            if (layout != null && i < layout.forward.length) {
+                flows[arc] = arcs.flow(layout.forward[i]);
+                flows[next.reverse[arc]] = -flows[arc];
+            }
+        }
+        layout = next;
+        arcs = new LongCsr(next, arcCapacities, flows);
+        dinic = new CsrDinic(arcs);
+    }
+}
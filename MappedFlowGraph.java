@@ -0,0 +1,196 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A graph solved straight from a file, without reading it in first. The
+ * file is a compressed sparse row graph, written by OffHeapFlowGraph.save
+ * or CsrFlowGraph.save, all little endian ints:
+ *
+ * - header: MAGIC, VERSION, node count n, arc count m
+ * - node table: n + 1 offsets, the arcs out of node u being offsets[u] up
+ *   to offsets[u + 1]
+ * - edges: m arc targets, then m reverse arc indexes
+ * - capacities: m arc capacities
+ *
+ * open maps the columns read only and reads the node table and edges
+ * through once to check them (offsets rising from 0 to m, targets below n,
+ * reverse arcs below m), throwing IOException for a file that fails, so a
+ * truncated or corrupted file can't send the solver out of bounds. The
+ * capacities aren't read until solving. Flows go in a
+ * separate writable mapping of a sparse temporary file, so the graph file
+ * is never written, several graphs can be opened on it at once, and
+ * opening doesn't have to zero m ints up front. Like OffHeapFlowGraph,
+ * maxFlow runs CsrDinic over the columns.
+ */
+public class MappedFlowGraph {
+    static final int MAGIC = 0x464c4f57;
+    static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+
+    private final ColumnCsr arcs;
+    private final CsrDinic dinic;
+
+    private MappedFlowGraph(ColumnCsr arcs) {
+        this.arcs = arcs;
+        dinic = new CsrDinic(arcs);
+    }
+
+    public static MappedFlowGraph open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a flow graph file.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + " has version " + version + ", expected " + VERSION + ".");
+            }
+            int n = header.getInt();
+            int m = header.getInt();
+            if (n < 0 || m < 0 || channel.size() != fileSize(n, m)) {
+                throw new IOException(file + " has the wrong size for its header.");
+            }
+
+            FileChannel.MapMode mode = FileChannel.MapMode.READ_ONLY;
+            long position = HEADER_BYTES;
+            IntColumn offsets = IntColumn.map(channel, mode, position, n + 1);
+            position += (n + 1L) * Integer.BYTES;
+            IntColumn targets = IntColumn.map(channel, mode, position, m);
+            position += (long)m * Integer.BYTES;
+            IntColumn reverse = IntColumn.map(channel, mode, position, m);
+            position += (long)m * Integer.BYTES;
+            IntColumn capacities = IntColumn.map(channel, mode, position, m);
+            check(file, n, m, offsets, targets, reverse);
+            return new MappedFlowGraph(new ColumnCsr(offsets, targets, capacities, flowColumn(m), reverse));
+        }
+    }
+
+    /**
+     * Throw an IOException naming +file+ unless +offsets+ go from 0 up to
+     * +m+ without ever going down, every target is a node below +n+ and
+     * every reverse arc is an arc below +m+. One pass over each column in
+     * file order; whether a reverse arc really leads back isn't checked,
+     * since that would be a random read per arc.
+     */
+    private static void check(Path file, int n, int m, IntColumn offsets, IntColumn targets, IntColumn reverse)
+        throws IOException {
+        if (offsets.get(0) != 0 || offsets.get(n) != m) {
+            throw new IOException(file + " has node offsets that don't cover its " + m + " arcs.");
+        }
+        for (int u = 0; u < n; u++) {
+            int first = offsets.get(u);
+            int end = offsets.get(u + 1);
+            if (end < first || end > m) {
+                throw new IOException(file + " has node offsets out of order at node " + u + ".");
+            }
+            for (int arc = first; arc < end; arc++) {
+                int v = targets.get(arc);
+                if (v < 0 || v >= n) {
+                    throw new IOException(file + " has arc " + arc + " to node " + v + ", out of 0.." + (n - 1) + ".");
+                }
+                int back = reverse.get(arc);
+                if (back < 0 || back >= m) {
+                    throw new IOException(file + " has arc " + arc + " with reverse arc " + back + ", out of 0.."
+                                          + (m - 1) + ".");
+                }
+            }
+        }
+    }
+
+    /**
+     * A writable column of +m+ zeros mapped from a sparse temporary file,
+     * so pages only get allocated where flow is actually pushed. The file
+     * is deleted when its channel closes; the mapping outlives it.
+     */
+    private static IntColumn flowColumn(int m) throws IOException {
+        Path flows = Files.createTempFile("flows", ".bin");
+        try (FileChannel channel = FileChannel.open(flows, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                                                    StandardOpenOption.SPARSE,
+                                                    StandardOpenOption.DELETE_ON_CLOSE)) {
+            return IntColumn.map(channel, FileChannel.MapMode.READ_WRITE, 0, m);
+        }
+    }
+
+    /**
+     * Write +arcs+ to +file+ in the format open reads, leaving out the
+     * flows.
+     */
+    static void save(IntCsrStorage arcs, Path file) throws IOException {
+        int n = arcs.nodeCount();
+        int m = arcs.arcCount();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+
+            FileChannel.MapMode mode = FileChannel.MapMode.READ_WRITE;
+            long position = HEADER_BYTES;
+            IntColumn offsets = IntColumn.map(channel, mode, position, n + 1);
+            for (int u = 0; u <= n; u++) {
+                offsets.set(u, arcs.firstArc(u));
+            }
+            position += (n + 1L) * Integer.BYTES;
+            IntColumn targets = IntColumn.map(channel, mode, position, m);
+            for (int arc = 0; arc < m; arc++) {
+                targets.set(arc, arcs.target(arc));
+            }
+            position += (long)m * Integer.BYTES;
+            IntColumn reverse = IntColumn.map(channel, mode, position, m);
+            for (int arc = 0; arc < m; arc++) {
+                reverse.set(arc, arcs.reverse(arc));
+            }
+            position += (long)m * Integer.BYTES;
+            IntColumn capacities = IntColumn.map(channel, mode, position, m);
+            for (int arc = 0; arc < m; arc++) {
+                capacities.set(arc, arcs.capacity(arc));
+            }
+        }
+    }
+
+    private static long fileSize(int n, int m) {
+        return HEADER_BYTES + (n + 1L) * Integer.BYTES + 3L * m * Integer.BYTES;
+    }
+
+    public int nodeCount() {
+        return arcs.nodeCount();
+    }
+
+    /**
+     * Number of arcs, counting each edge's residual arc.
+     */
+    public int arcCount() {
+        return arcs.arcCount();
+    }
+
+    /**
+     * Take the flow off every arc, so the next maxFlow starts from
+     * nothing.
+     */
+    public void resetFlows() {
+        arcs.clearFlows();
+    }
+
+    public int maxFlow(int source, int sink) {
+        int n = arcs.nodeCount();
+        if (source < 0 || source >= n) {
+            return 0;
+        }
+        if (sink < 0 || sink >= n) {
+            return arcs.outflow(source);
+        }
+        dinic.maxFlow(source, sink);
+        return arcs.outflow(source);
+    }
+}
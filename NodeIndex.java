@@ -0,0 +1,70 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense int ids for the nodes of one or more FlowGraphs. Every distinct node
+ * gets the next id, 0, 1, 2, ..., the first time it is interned and keeps it
+ * from then on, so the engines can keep their per-node state in arrays
+ * indexed by id and only hash a node when it comes in through the API.
+ *
+ * Graphs built over the same nodes (AntWorld builds one per engine from the
+ * same workplaces) can share an index by passing it to the FlowGraph
+ * constructor; each node is then hashed into it only once, and its id means
+ * the same thing in every one of those graphs. Ids are never reused, so an
+ * index shared by graphs over very different nodes only grows.
+ */
+public class NodeIndex<T> {
+    private final Map<T, Integer> ids;
+    private final List<T> nodes;
+
+    public NodeIndex() {
+        ids = new HashMap<>();
+        nodes = new ArrayList<>();
+    }
+
+    /**
+     * An index with room for +expectedNodes+ nodes before it has to grow.
+     */
+    public NodeIndex(int expectedNodes) {
+        if (expectedNodes < 0) {
+            throw new IllegalArgumentException("expectedNodes can't be negative.");
+        }
+        ids = new HashMap<>(FlowGraph.hashCapacity(expectedNodes));
+        nodes = new ArrayList<>(expectedNodes);
+    }
+
+    /**
+     * The id of +node+, giving it the next free one if it doesn't have one
+     * yet.
+     */
+    public int intern(T node) {
+        Integer id = ids.get(node);
+        if (id == null) {
+            id = nodes.size();
+            ids.put(node, id);
+            nodes.add(node);
+        }
+        return id;
+    }
+
+    /**
+     * The id of +node+, or -1 if it was never interned.
+     */
+    public int id(T node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    public T node(int id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * How many nodes have an id, which is also one more than the largest id.
+     */
+    public int size() {
+        return nodes.size();
+    }
+}
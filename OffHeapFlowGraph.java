@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * A flow graph whose edges live outside the Java heap, for networks too big
+ * to hold as FlowEdge objects. Nodes are the ints 0..n-1 (a NodeIndex can
+ * map other node types onto them) and every edge is stored as two arcs in
+ * int columns in direct memory, see IntColumn: 4 ints, 16 bytes, per arc
+ * plus one per node, and no per-edge objects for the garbage collector to
+ * trace, however big the graph gets.
+ *
+ * Edges go in through a Builder, which keeps them as three columns (source,
+ * sink, capacity) and sorts them into compressed sparse row form with
+ * CsrLayout's counting sort when built. Unlike FlowGraph, parallel edges
+ * stay separate.
+ *
+ * maxFlow runs Dinic's algorithm (CsrDinic) directly over the columns; only
+ * its per-node scratch arrays are on the heap. Up to Integer.MAX_VALUE / 2
+ * edges fit.
+ *
+ * Direct memory has its own limit, -XX:MaxDirectMemorySize, which is the
+ * heap's -Xmx unless set, so a big graph on a small heap needs it raised.
+ * Building takes up to about 56 bytes of it per edge: 32 for the graph's
+ * arcs, and 24 for the Builder's columns, which have room for up to twice
+ * the edges added. 20 million edges build and solve with -Xmx64m
+ * -XX:MaxDirectMemorySize=1g, and fail without the second flag.
+ */
+public class OffHeapFlowGraph {
+    private final ColumnCsr arcs;
+    private final CsrDinic dinic;
+
+    public static class Builder {
+        private static final int INITIAL_EDGES = 1024;
+
+        private IntColumn sources = new IntColumn(INITIAL_EDGES);
+        private IntColumn sinks = new IntColumn(INITIAL_EDGES);
+        private IntColumn capacities = new IntColumn(INITIAL_EDGES);
+        private int edges;
+        private int nodes;
+
+        public void addEdge(int source, int sink, int capacity) {
+            if (source < 0 || sink < 0) {
+                throw new IllegalArgumentException("nodes can't be negative.");
+            }
+            if (source == sink) {
+                throw new IllegalArgumentException("source can't equal sink.");
+            }
+            if (edges == Integer.MAX_VALUE / 2) {
+                throw new IllegalStateException("too many edges.");
+            }
+            if (edges == sources.length()) {
+                int length = (int)Math.min(2L * edges, Integer.MAX_VALUE / 2);
+                sources = sources.copyOf(length);
+                sinks = sinks.copyOf(length);
+                capacities = capacities.copyOf(length);
+            }
+            sources.set(edges, source);
+            sinks.set(edges, sink);
+            capacities.set(edges, capacity);
+            edges++;
+            nodes = Math.max(nodes, Math.max(source, sink) + 1);
+        }
+
+        /**
+         * Sort the edges added so far into a graph. The builder can keep
+         * going afterwards; the graph won't see the new edges.
+         */
+        public OffHeapFlowGraph build() {
+            int arcs = 2 * edges;
+            IntColumn offsets = new IntColumn(nodes + 1);
+            IntColumn arcTargets = new IntColumn(arcs);
+            IntColumn arcCapacities = new IntColumn(arcs);
+            IntColumn arcReverse = new IntColumn(arcs);
+            CsrLayout.layOut(nodes, sources, sinks, edges, offsets, arcTargets, arcReverse,
+                             (edge, arc) -> arcCapacities.set(arc, capacities.get(edge)));
+            return new OffHeapFlowGraph(new ColumnCsr(offsets, arcTargets, arcCapacities, new IntColumn(arcs),
+                                                      arcReverse));
+        }
+    }
+
+    private OffHeapFlowGraph(ColumnCsr arcs) {
+        this.arcs = arcs;
+        dinic = new CsrDinic(arcs);
+    }
+
+    public int nodeCount() {
+        return arcs.nodeCount();
+    }
+
+    /**
+     * Write the graph's nodes, arcs and capacities to +file+ for
+     * MappedFlowGraph.open; flows aren't saved.
+     */
+    public void save(Path file) throws IOException {
+        MappedFlowGraph.save(arcs, file);
+    }
+
+    /**
+     * Number of arcs, counting each edge's residual arc.
+     */
+    public int arcCount() {
+        return arcs.arcCount();
+    }
+
+    /**
+     * Take the flow off every arc, so the next maxFlow starts from
+     * nothing.
+     */
+    public void resetFlows() {
+        arcs.clearFlows();
+    }
+
+    public int maxFlow(int source, int sink) {
+        int n = arcs.nodeCount();
+        if (source < 0 || source >= n) {
+            return 0;
+        }
+        if (sink < 0 || sink >= n) {
+            return arcs.outflow(source);
+        }
+        dinic.maxFlow(source, sink);
+        return arcs.outflow(source);
+    }
+}
@@ -0,0 +1,446 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hochbaum's pseudoflow algorithm (highest label variant) over the edges of
+ * a FlowGraph.
+ *
+ * Every edge out of the source and into the sink starts saturated, so each
+ * node begins with an excess (more in than out, "strong") or a deficit
+ * ("weak"). Nodes are kept in a forest where only the roots carry any
+ * excess. The algorithm repeatedly takes the strong root with the highest
+ * label, looks in its tree for a residual edge to a node one label lower
+ * (a merger), hangs the strong tree off that node, and pushes the root's
+ * excess across towards the other root. Edges along the way that can't take
+ * all of it are cut, leaving the remainder at a new strong root. A strong
+ * node with no merger edge and no child at its own label is relabeled.
+ *
+ * Once no strong root below label n is left, the strong nodes and the
+ * source form a minimum cut, so the max flow value is already known. What
+ * the graph holds at that point is a pseudoflow though: maxFlow then sends
+ * the strong roots' excess back to the source and trims the weak roots'
+ * deficits off their sink edges, which leaves a valid max flow.
+ */
+class Pseudoflow<T> {
+    private static final int NONE = -1;
+
+    private final FlowGraph<T> g;
+    private final NodeIndex<T> index;
+    private final List<List<FlowEdge<T>>> adjacency = new ArrayList<>();
+    private int[][] targets;
+    // the edges into each node; only the sink's are needed
+    private final List<List<FlowEdge<T>>> inEdges;
+
+    private int n;
+    private int source;
+    private int sink;
+    private int[] label;
+    private int[] excess;
+    private int[] currentArc;
+
+    // the forest: parent pointers, the edge towards the parent, and a
+    // doubly linked list of children per node
+    private int[] parent;
+    private List<FlowEdge<T>> toParent;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] prevSibling;
+    private int[] nextScan;
+
+    // strong roots, one singly linked list per label
+    private int[] bucket;
+    private int[] nextInBucket;
+    private boolean[] queued;
+    private int highest;
+
+    Pseudoflow(FlowGraph<T> g) {
+        this.g = g;
+        index = g.index();
+        n = index.size();
+        for (int u = 0; u < n; u++) {
+            adjacency.add(new ArrayList<>(g.getEdges(index.node(u))));
+        }
+        targets = new int[n][];
+        for (int u = 0; u < n; u++) {
+            List<FlowEdge<T>> out = adjacency.get(u);
+            targets[u] = new int[out.size()];
+            for (int i = 0; i < out.size(); i++) {
+                targets[u][i] = out.get(i).sinkId;
+            }
+        }
+        inEdges = g.inEdges();
+    }
+
+    /**
+     * Find the minimum cut, then recover a flow from the pseudoflow.
+     */
+    int maxFlow(T source, T sink) {
+        if (run(source, sink)) {
+            recoverFlow();
+        }
+        return g.outflow(source);
+    }
+
+    /**
+     * Find the minimum cut and return its capacity without recovering a
+     * flow, leaving the graph with excesses and deficits at the tree roots
+     * for FlowGraph to throw away before the next solve.
+     */
+    int minCut(T source, T sink) {
+        if (!run(source, sink)) {
+            return g.outflow(source);
+        }
+        g.markPreflow();
+
+        boolean[] sourceSide = new boolean[n];
+        for (int u = 0; u < n; u++) {
+            sourceSide[u] = u == this.source || (u != this.sink && excess[root(u)] > 0);
+        }
+        int capacity = 0;
+        for (int u = 0; u < n; u++) {
+            if (!sourceSide[u]) {
+                continue;
+            }
+            List<FlowEdge<T>> out = adjacency.get(u);
+            for (int i = 0; i < out.size(); i++) {
+                if (!sourceSide[targets[u][i]]) {
+                    capacity += out.get(i).capacity;
+                }
+            }
+        }
+        return capacity;
+    }
+
+    /**
+     * Returns false without touching the graph when there's nothing to do.
+     */
+    private boolean run(T source, T sink) {
+        if (source.equals(sink) || index.id(source) < 0 || index.id(sink) < 0) {
+            return false;
+        }
+        this.source = index.id(source);
+        this.sink = index.id(sink);
+
+        label = new int[n];
+        excess = new int[n];
+        currentArc = new int[n];
+        parent = new int[n];
+        toParent = new ArrayList<>(n);
+        firstChild = new int[n];
+        nextSibling = new int[n];
+        prevSibling = new int[n];
+        nextScan = new int[n];
+        bucket = new int[n + 1];
+        nextInBucket = new int[n];
+        queued = new boolean[n];
+        Arrays.fill(parent, NONE);
+        Arrays.fill(firstChild, NONE);
+        Arrays.fill(bucket, NONE);
+        Arrays.fill(label, 1);
+        for (int u = 0; u < n; u++) {
+            toParent.add(null);
+        }
+        label[this.source] = n;
+        label[this.sink] = 0;
+        highest = 0;
+
+        saturateTerminalEdges();
+        for (int u = 0; u < n; u++) {
+            if (!isTerminal(u) && excess[u] > 0) {
+                addStrongRoot(u);
+            }
+        }
+
+        int r;
+        while ((r = nextStrongRoot()) != NONE) {
+            processRoot(r);
+        }
+        return true;
+    }
+
+    private void saturateTerminalEdges() {
+        List<FlowEdge<T>> out = adjacency.get(source);
+        for (int i = 0; i < out.size(); i++) {
+            int flow = g.residual(out.get(i));
+            if (flow > 0) {
+                g.push(out.get(i), flow);
+                excess[targets[source][i]] += flow;
+            }
+        }
+        for (FlowEdge<T> in : inEdges.get(sink)) {
+            int flow = g.residual(in);
+            if (flow > 0 && in.sourceId != source) {
+                g.push(in, flow);
+                excess[in.sourceId] -= flow;
+            }
+        }
+    }
+
+    /**
+     * Depth first through +r+'s tree, only descending into children at the
+     * same label, looking for a merger edge. A node is relabeled once none
+     * of its edges or children at its label are left to try.
+     */
+    private void processRoot(int r) {
+        int s = r;
+        nextScan[r] = firstChild[r];
+        if (merge(r, s)) {
+            return;
+        }
+        checkChildren(r);
+
+        while (s != NONE) {
+            while (nextScan[s] != NONE) {
+                int child = nextScan[s];
+                nextScan[s] = nextSibling[child];
+                s = child;
+                nextScan[s] = firstChild[s];
+                if (merge(r, s)) {
+                    return;
+                }
+                checkChildren(s);
+            }
+            s = parent[s];
+            if (s != NONE) {
+                checkChildren(s);
+            }
+        }
+        addStrongRoot(r);
+    }
+
+    /**
+     * Relabel +u+ unless one of its children still to be scanned is at
+     * its label, in which case leave nextScan pointing at that child.
+     */
+    private void checkChildren(int u) {
+        for (; nextScan[u] != NONE; nextScan[u] = nextSibling[nextScan[u]]) {
+            if (label[nextScan[u]] == label[u]) {
+                return;
+            }
+        }
+        label[u]++;
+        currentArc[u] = 0;
+    }
+
+    /**
+     * Look for a residual edge from strong node +s+ (in +r+'s tree) to a
+     * node one label lower. If there is one, make s the root of its tree,
+     * hang it off the other end of the edge, and push r's excess across.
+     */
+    private boolean merge(int r, int s) {
+        List<FlowEdge<T>> out = adjacency.get(s);
+        for (; currentArc[s] < out.size(); currentArc[s]++) {
+            int w = targets[s][currentArc[s]];
+            FlowEdge<T> e = out.get(currentArc[s]);
+            if (!isTerminal(w) && label[w] == label[s] - 1 && g.residual(e) > 0) {
+                reroot(s);
+                attach(s, w, e);
+                pushExcess(r);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Turn the tree +s+ is in upside down so that s is its root.
+     */
+    private void reroot(int s) {
+        int child = s;
+        int p = parent[s];
+        FlowEdge<T> e = toParent.get(s);
+        detach(s);
+        while (p != NONE) {
+            int next = parent[p];
+            FlowEdge<T> up = toParent.get(p);
+            detach(p);
+            attach(p, child, e.residualEdge);
+            child = p;
+            e = up;
+            p = next;
+        }
+    }
+
+    /**
+     * Move +r+'s excess up the parent pointers to the root of the tree it
+     * was merged into. Where an edge can't take all of it, cut the edge and
+     * leave the rest at the node below as a new strong root.
+     */
+    private void pushExcess(int r) {
+        int amount = excess[r];
+        excess[r] = 0;
+        int u = r;
+        while (parent[u] != NONE && amount > 0) {
+            int p = parent[u];
+            FlowEdge<T> e = toParent.get(u);
+            int residual = g.residual(e);
+            if (residual < amount) {
+                detach(u);
+                excess[u] = amount - residual;
+                addStrongRoot(u);
+                amount = residual;
+            }
+            if (amount > 0) {
+                g.push(e, amount);
+            }
+            u = p;
+        }
+        if (parent[u] == NONE) {
+            excess[u] += amount;
+            if (excess[u] > 0) {
+                addStrongRoot(u);
+            }
+        }
+    }
+
+    private void attach(int child, int p, FlowEdge<T> e) {
+        parent[child] = p;
+        toParent.set(child, e);
+        prevSibling[child] = NONE;
+        nextSibling[child] = firstChild[p];
+        if (firstChild[p] != NONE) {
+            prevSibling[firstChild[p]] = child;
+        }
+        firstChild[p] = child;
+    }
+
+    private void detach(int child) {
+        int p = parent[child];
+        if (p == NONE) {
+            return;
+        }
+        if (prevSibling[child] != NONE) {
+            nextSibling[prevSibling[child]] = nextSibling[child];
+        }
+        else {
+            firstChild[p] = nextSibling[child];
+        }
+        if (nextSibling[child] != NONE) {
+            prevSibling[nextSibling[child]] = prevSibling[child];
+        }
+        if (nextScan[p] == child) {
+            nextScan[p] = nextSibling[child];
+        }
+        parent[child] = NONE;
+        toParent.set(child, null);
+    }
+
+    private int root(int u) {
+        while (parent[u] != NONE) {
+            u = parent[u];
+        }
+        return u;
+    }
+
+    private boolean isTerminal(int u) {
+        return u == source || u == sink;
+    }
+
+    private void addStrongRoot(int u) {
+        if (queued[u] || label[u] >= n) {
+            return;
+        }
+        queued[u] = true;
+        nextInBucket[u] = bucket[label[u]];
+        bucket[label[u]] = u;
+        highest = Math.max(highest, label[u]);
+    }
+
+    /**
+     * The strong root with the highest label below n, or NONE when phase
+     * one is done. Entries that stopped being strong roots since they were
+     * filed are dropped, and ones relabeled since are filed again.
+     */
+    private int nextStrongRoot() {
+        while (highest > 0) {
+            int u = bucket[highest];
+            if (u == NONE) {
+                highest--;
+                continue;
+            }
+            bucket[highest] = nextInBucket[u];
+            queued[u] = false;
+            if (parent[u] != NONE || excess[u] <= 0) {
+                continue;
+            }
+            if (label[u] != highest) {
+                addStrongRoot(u);
+                continue;
+            }
+            return u;
+        }
+        return NONE;
+    }
+
+    /**
+     * Turn the pseudoflow into a flow: a weak root's deficit came from its
+     * own saturated sink edge, so take it back off that edge, and send every
+     * strong root's excess back to the source along edges carrying flow in.
+     */
+    private void recoverFlow() {
+        for (FlowEdge<T> in : inEdges.get(sink)) {
+            int v = in.sourceId;
+            if (excess[v] < 0 && in.flow > 0) {
+                // pushing a negative amount takes flow back off v -> sink
+                int flow = Math.min(-excess[v], in.flow);
+                g.push(in, -flow);
+                excess[v] += flow;
+            }
+        }
+
+        int[] path = new int[n];
+        int[] arc = new int[n];
+        int[] visited = new int[n];
+        int stamp = 0;
+        for (int v = 0; v < n; v++) {
+            while (!isTerminal(v) && excess[v] > 0) {
+                stamp++;
+                int depth = returnPath(v, path, arc, visited, stamp);
+                int flow = excess[v];
+                for (int i = 0; i < depth; i++) {
+                    flow = Math.min(flow, g.residual(adjacency.get(path[i]).get(arc[path[i]])));
+                }
+                for (int i = 0; i < depth; i++) {
+                    g.push(adjacency.get(path[i]).get(arc[path[i]]), flow);
+                }
+                excess[v] -= flow;
+            }
+        }
+    }
+
+    /**
+     * DFS from +v+ to the source following flow backwards: an edge u -> x
+     * whose flow is negative is the residual of x -> u carrying flow into u,
+     * and pushing along it sends that flow back. Fills +path+ with the nodes
+     * left along the way (each leaving through edge +arc+[node]) and
+     * returns how many there are.
+     */
+    private int returnPath(int v, int[] path, int[] arc, int[] visited, int stamp) {
+        int depth = 0;
+        path[0] = v;
+        arc[v] = 0;
+        visited[v] = stamp;
+        while (path[depth] != source) {
+            int u = path[depth];
+            List<FlowEdge<T>> out = adjacency.get(u);
+            boolean advanced = false;
+            for (; arc[u] < out.size(); arc[u]++) {
+                int x = targets[u][arc[u]];
+                FlowEdge<T> e = out.get(arc[u]);
+                if (visited[x] != stamp && g.residual(e) > e.capacity) {
+                    visited[x] = stamp;
+                    arc[x] = 0;
+                    path[++depth] = x;
+                    advanced = true;
+                    break;
+                }
+            }
+            if (!advanced) {
+                depth--;
+                arc[path[depth]]++;
+            }
+        }
+        return depth;
+    }
+}
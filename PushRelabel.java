@@ -0,0 +1,327 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Push-relabel over the edges of a FlowGraph.
+ *
+ * Instead of looking for paths, the source floods all its edges and every
+ * node holding more flow than it can pass on (an active node) pushes the
+ * excess to neighbours one height below it, raising its own height when it
+ * is stuck. Active nodes are picked either in FIFO order or highest height
+ * first, see Selection. Two heuristics keep the heights close to the real
+ * distances:
+ *
+ * - gap: when no node is left at some height k, nothing above k can reach
+ *   the sink any more, so those nodes are lifted straight past the source.
+ * - global relabel: every n relabels the heights are recomputed exactly by
+ *   a BFS backwards from the sink (and from the source for the nodes that
+ *   can only send their excess back).
+ *
+ * The work splits into two phases. In the first, nodes below height n push
+ * towards the sink; when none are left active the excess at the sink is
+ * already the max flow value. In the second, the excess stranded above
+ * height n drains back to the source, leaving a valid flow in the graph.
+ * maxPreflow stops after the first phase.
+ */
+class PushRelabel<T> {
+    /**
+     * Which active node to discharge next.
+     */
+    enum Selection {
+        /** Oldest active node first, kept in a ring queue. */
+        FIFO,
+        /** Highest active node first, kept in one bucket list per height. */
+        HIGHEST_LABEL
+    }
+
+    private final FlowGraph<T> g;
+    private final Selection selection;
+    private final NodeIndex<T> index;
+    private final List<List<FlowEdge<T>>> adjacency = new ArrayList<>();
+    private int[][] targets;
+    // the edges into each node, for the global relabel's backward BFS
+    private final List<List<FlowEdge<T>>> inEdges;
+
+    private int n;
+    private int source;
+    private int sink;
+    private boolean preflowOnly;
+    private int[] height;
+    private int[] excess;
+    private int[] currentArc;
+    private int[] count;
+    private int relabelsSinceGlobal;
+    private boolean[] queued;
+
+    // FIFO: ring queue of active nodes
+    private int[] queue;
+    private int head;
+    private int tail;
+
+    // HIGHEST_LABEL: singly linked list of active nodes per height
+    private int[] bucket;
+    private int[] nextInBucket;
+    private int highest;
+
+    PushRelabel(FlowGraph<T> g, Selection selection) {
+        this.g = g;
+        this.selection = selection;
+        index = g.index();
+        n = index.size();
+        for (int u = 0; u < n; u++) {
+            adjacency.add(new ArrayList<>(g.getEdges(index.node(u))));
+        }
+        targets = new int[n][];
+        for (int u = 0; u < n; u++) {
+            List<FlowEdge<T>> out = adjacency.get(u);
+            targets[u] = new int[out.size()];
+            for (int i = 0; i < out.size(); i++) {
+                targets[u][i] = out.get(i).sinkId;
+            }
+        }
+        inEdges = g.inEdges();
+    }
+
+    /**
+     * Run both phases, leaving a max flow in the graph.
+     */
+    int maxFlow(T source, T sink) {
+        run(source, sink, false);
+        return g.outflow(source);
+    }
+
+    /**
+     * Run the first phase only and return the flow that reached +sink+,
+     * which is the max flow value. The graph is left holding a preflow:
+     * some nodes may still have more flow coming in than going out.
+     */
+    int maxPreflow(T source, T sink) {
+        if (!run(source, sink, true)) {
+            return g.outflow(source);
+        }
+        g.markPreflow();
+        return g.inflow(sink);
+    }
+
+    /**
+     * Returns false without touching the graph when there's nothing to do.
+     */
+    private boolean run(T source, T sink, boolean preflowOnly) {
+        if (source.equals(sink) || index.id(source) < 0 || index.id(sink) < 0) {
+            return false;
+        }
+        this.source = index.id(source);
+        this.sink = index.id(sink);
+        this.preflowOnly = preflowOnly;
+
+        height = new int[n];
+        excess = new int[n];
+        currentArc = new int[n];
+        count = new int[2 * n + 1];
+        queued = new boolean[n];
+        if (selection == Selection.FIFO) {
+            queue = new int[n];
+            head = 0;
+            tail = 0;
+        }
+        else {
+            bucket = new int[2 * n + 1];
+            nextInBucket = new int[n];
+            Arrays.fill(bucket, -1);
+            highest = 0;
+        }
+
+        height[this.source] = n;
+        List<FlowEdge<T>> out = adjacency.get(this.source);
+        for (int i = 0; i < out.size(); i++) {
+            FlowEdge<T> e = out.get(i);
+            int flow = g.residual(e);
+            if (flow > 0) {
+                g.push(e, flow);
+                excess[this.source] -= flow;
+                excess[targets[this.source][i]] += flow;
+            }
+        }
+        globalRelabel();
+        for (int u = 0; u < n; u++) {
+            if (excess[u] > 0) {
+                activate(u);
+            }
+        }
+
+        int u;
+        while ((u = nextActive()) != -1) {
+            discharge(u);
+        }
+        return true;
+    }
+
+    /**
+     * Push +u+'s excess to admissible neighbours until it is gone,
+     * relabeling whenever the current arc runs off the end of the edge list.
+     */
+    private void discharge(int u) {
+        List<FlowEdge<T>> out = adjacency.get(u);
+        while (excess[u] > 0) {
+            if (preflowOnly && height[u] >= n) {
+                // can't reach the sink any more, the excess stays here
+                return;
+            }
+            if (currentArc[u] == out.size()) {
+                relabel(u);
+                continue;
+            }
+            FlowEdge<T> e = out.get(currentArc[u]);
+            int v = targets[u][currentArc[u]];
+            int residual = g.residual(e);
+            if (residual > 0 && height[u] == height[v] + 1) {
+                int flow = Math.min(excess[u], residual);
+                g.push(e, flow);
+                excess[u] -= flow;
+                excess[v] += flow;
+                activate(v);
+            }
+            else {
+                currentArc[u]++;
+            }
+        }
+    }
+
+    private void relabel(int u) {
+        List<FlowEdge<T>> out = adjacency.get(u);
+        int newHeight = 2 * n;
+        for (int i = 0; i < out.size(); i++) {
+            if (g.residual(out.get(i)) > 0) {
+                newHeight = Math.min(newHeight, height[targets[u][i]] + 1);
+            }
+        }
+
+        int oldHeight = height[u];
+        count[oldHeight]--;
+        height[u] = newHeight;
+        count[newHeight]++;
+        currentArc[u] = 0;
+
+        if (oldHeight < n && count[oldHeight] == 0) {
+            gap(oldHeight);
+        }
+        if (++relabelsSinceGlobal >= n) {
+            globalRelabel();
+        }
+    }
+
+    /**
+     * Nobody is left at height +k+, so every node between k and n is cut
+     * off from the sink. Lift them above the source so their excess goes
+     * back where it came from.
+     */
+    private void gap(int k) {
+        for (int u = 0; u < n; u++) {
+            if (height[u] > k && height[u] < n) {
+                count[height[u]]--;
+                height[u] = n + 1;
+                count[height[u]]++;
+                currentArc[u] = 0;
+            }
+        }
+    }
+
+    /**
+     * Recompute every height as the exact residual distance to the sink,
+     * or n plus the distance to the source for nodes that can't reach it.
+     */
+    private void globalRelabel() {
+        relabelsSinceGlobal = 0;
+        Arrays.fill(height, 2 * n);
+        height[sink] = 0;
+        height[source] = n;
+        reverseBfs(sink);
+        reverseBfs(source);
+
+        Arrays.fill(count, 0);
+        Arrays.fill(currentArc, 0);
+        for (int u = 0; u < n; u++) {
+            count[height[u]]++;
+        }
+    }
+
+    /**
+     * BFS backwards along residual edges from +root+, giving every node not
+     * labeled yet a height one more than the node it was reached from. The
+     * source and sink keep their fixed heights and are never passed through.
+     */
+    private void reverseBfs(int root) {
+        Deque<Integer> q = new ArrayDeque<>();
+        q.addFirst(root);
+        while (!q.isEmpty()) {
+            int v = q.removeLast();
+            for (FlowEdge<T> e : inEdges.get(v)) {
+                int u = e.sourceId;
+                if (u != source && u != sink && height[u] == 2 * n && g.residual(e) > 0) {
+                    height[u] = height[v] + 1;
+                    q.addFirst(u);
+                }
+            }
+        }
+    }
+
+    private void activate(int u) {
+        if (u == source || u == sink || queued[u]) {
+            return;
+        }
+        queued[u] = true;
+        if (selection == Selection.FIFO) {
+            queue[tail] = u;
+            tail = (tail + 1) % n;
+        }
+        else {
+            addToBucket(u);
+        }
+    }
+
+    /**
+     * Take the next node to discharge off the active set, or -1 when the
+     * phase (or both phases) is done.
+     */
+    private int nextActive() {
+        while (true) {
+            int u;
+            if (selection == Selection.FIFO) {
+                if (head == tail) {
+                    return -1;
+                }
+                u = queue[head];
+                head = (head + 1) % n;
+            }
+            else {
+                while (highest >= 0 && bucket[highest] == -1) {
+                    highest--;
+                }
+                if (highest < 0) {
+                    return -1;
+                }
+                u = bucket[highest];
+                bucket[highest] = nextInBucket[u];
+                if (height[u] != highest) {
+                    // a gap or global relabel moved it since it was filed
+                    addToBucket(u);
+                    continue;
+                }
+            }
+            queued[u] = false;
+            if (preflowOnly && height[u] >= n) {
+                continue;
+            }
+            return u;
+        }
+    }
+
+    private void addToBucket(int u) {
+        nextInBucket[u] = bucket[height[u]];
+        bucket[height[u]] = u;
+        highest = Math.max(highest, height[u]);
+    }
+}
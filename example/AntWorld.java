@@ -1,5 +1,7 @@
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * Problem statement:
@@ -43,6 +45,11 @@ import java.util.*;
  */
 class AntWorld {
     public static void main(String [] args) throws Exception {
+        if (args.length > 0 && args[0].equals("bench")) {
+            benchmark();
+            return;
+        }
+
         String[] files = { "world.txt", "world2.txt", "world3.txt", "world4.txt", "world5.txt", "world6.txt", "world7.txt", "world8.txt", "world9.txt", "world10.txt",  "world11.txt", "world13.txt", "world14.txt" };
         int[] expectedResults = {1, 2, 1, 3, 1, 135, 120, 117, 124, 0, 2, 2, 1};
 
@@ -52,6 +59,21 @@ class AntWorld {
             int antCount = countAnts(world);
             System.out.println(files[i] + ": count: " + antCount + ", expected: " + expectedResults[i]);
             assert antCount == expectedResults[i];
+
+            // every engine has to agree with the default one, with and
+            // without compressing the graph
+            for (FlowGraph.Engine engine : FlowGraph.Engine.values()) {
+                assert countAnts(world, engine) == expectedResults[i] : files[i] + " " + engine;
+                assert countAntsUncompressed(world, engine) == expectedResults[i] : files[i] + " " + engine + " uncompressed";
+            }
+            assert countAntsLayered(world) == antCount : files[i] + " layered";
+            assert countAntsFrozen(world) == antCount : files[i] + " frozen";
+            List<Workplace> searched = findWorkplacesOneByOne(world, workplaceCells(world));
+            assert sameReach(findWorkplacesBatched(world, workplaceCells(world)), searched) : files[i] + " batched search";
+            assert sameReach(findWorkplaces(world), searched) : files[i] + " components";
+            assert sameReach(findWorkplacesParallel(world, workplaceCells(world), false), searched) : files[i] + " parallel";
+            assert sameReach(findWorkplacesParallel(world, workplaceCells(world), true), searched)
+                : files[i] + " parallel batched";
         }
     }
 
@@ -67,24 +89,57 @@ class AntWorld {
     }
 
     public static int countAnts(World world) {
-        List<Workplace> workplaces = new ArrayList<>();
-        for (int row = 0; row < world.NUM_ROWS; row++) {
-            for (int col = 0; col < world.NUM_COLS; col++) {
-                if (world.matrix[row][col] == WORKPLACE) {
-                    Point start = new Point(row, col);
-                    workplaces.add(search(world, start));
-                }
-            }
-        }
+        return countAnts(world, FlowGraph.Engine.EDMONDS_KARP);
+    }
 
-        // construct a flow graph in such a way that calculating the max flow
-        // calculates the number of ants we can allocate.
-        FlowGraph<Point> g = new FlowGraph<>();
+    public static int countAnts(World world, FlowGraph.Engine engine) {
+        List<Workplace> workplaces = findWorkplaces(world);
+
+        // we only need the count, not the flow itself
+        return buildCompressedGraph(workplaces, engine).maxFlowValue(FLOW_SOURCE, FLOW_SINK);
+    }
 
-        // doesn't matter what our source and sink are, as long as they are unique
-        // in the graph and can be referenced later.
-        Point flowSource = new Point(-1, -1);
-        Point flowSink = new Point(-2, -2);
+    /**
+     * Same answer as countAnts, solved by +engine+ on the unit capacity
+     * graph with one node pair per workplace, before compressing it.
+     */
+    public static int countAntsUncompressed(World world, FlowGraph.Engine engine) {
+        return buildGraph(findWorkplaces(world), engine).maxFlow(FLOW_SOURCE, FLOW_SINK);
+    }
+
+    /**
+     * Same answer as countAnts, solved on a CsrFlowGraph frozen from the
+     * usual graph.
+     */
+    public static int countAntsFrozen(World world) {
+        return buildGraph(findWorkplaces(world), FlowGraph.Engine.DINIC).freeze().maxFlow(FLOW_SOURCE, FLOW_SINK);
+    }
+
+    // doesn't matter what our source and sink are, as long as they are unique
+    // in the graph and can be referenced later.
+    private static final Point FLOW_SOURCE = new Point(-1, -1);
+    private static final Point FLOW_SINK = new Point(-2, -2);
+
+    private static FlowGraph<Point> buildGraph(List<Workplace> workplaces, FlowGraph.Engine engine) {
+        return buildGraph(workplaces, engine, new NodeIndex<>());
+    }
+
+    private static FlowGraph<Point> buildGraph(List<Workplace> workplaces, FlowGraph.Engine engine,
+                                               NodeIndex<Point> index) {
+        // construct a flow graph in such a way that calculating the max flow
+        // calculates the number of ants we can allocate. a fruit or meat
+        // reached from several workplaces gets its edges added once per
+        // workplace; those are repeats of one capacity 1 edge, not extra
+        // capacity, so they coalesce to the max. every fruit and meat a
+        // workplace reaches adds five edges.
+        int edges = 0;
+        for (Workplace workplace : workplaces) {
+            edges += 5 * (workplace.fruit.size() + workplace.meat.size());
+        }
+        FlowGraph.Builder<Point> g = new FlowGraph.Builder<>(index, edges);
+        g.setParallelEdges(FlowGraph.ParallelEdges.MAX);
+        Point flowSource = FLOW_SOURCE;
+        Point flowSink = FLOW_SINK;
         
         for (Workplace workplace : workplaces) {
             // create edges for all the potential {fruit, meat, workplace} paths we found
@@ -99,68 +154,807 @@ class AntWorld {
                 addEdge(g, flowSource, flowSink, meat, flowSink);
             }
         }
-        return g.maxFlow(flowSource, flowSink);
+        return g.build(engine);
+    }
+
+    /**
+     * The graph buildGraph builds, with interchangeable nodes merged. Ws
+     * that reach the same F and the same M are interchangeable, and so are
+     * Fs, or Ms, reached from the same Ws; each such class becomes a single
+     * node pair whose capacity is the size of the class, with an edge to
+     * every class its members have edges to. Every member of one class has
+     * an edge to every member of the other, so any integral flow through
+     * the classes can be spread back over their members one unit each, and
+     * the max flow is the same.
+     */
+    private static FlowGraph<Point> buildCompressedGraph(List<Workplace> workplaces, FlowGraph.Engine engine) {
+        // the classes of Ws, each named by its first W
+        Map<List<Set<Point>>, Integer> workplaceClassOf = new HashMap<>();
+        List<Workplace> workplaceClasses = new ArrayList<>();
+        List<Integer> workplaceCounts = new ArrayList<>();
+        for (Workplace workplace : workplaces) {
+            if (workplace.fruit.isEmpty() || workplace.meat.isEmpty()) {
+                // can't take an ant
+                continue;
+            }
+            Integer c = workplaceClassOf.putIfAbsent(List.of(workplace.fruit, workplace.meat), workplaceClasses.size());
+            if (c == null) {
+                workplaceClasses.add(workplace);
+                workplaceCounts.add(1);
+            }
+            else {
+                workplaceCounts.set(c, workplaceCounts.get(c) + 1);
+            }
+        }
+
+        // the W classes reaching each F and M, in increasing order
+        Map<Point, List<Integer>> fruitReachedBy = new LinkedHashMap<>();
+        Map<Point, List<Integer>> meatReachedBy = new LinkedHashMap<>();
+        for (int c = 0; c < workplaceClasses.size(); c++) {
+            for (Point fruit : workplaceClasses.get(c).fruit) {
+                fruitReachedBy.computeIfAbsent(fruit, f -> new ArrayList<>()).add(c);
+            }
+            for (Point meat : workplaceClasses.get(c).meat) {
+                meatReachedBy.computeIfAbsent(meat, m -> new ArrayList<>()).add(c);
+            }
+        }
+
+        FlowGraph.Builder<Point> g = new FlowGraph.Builder<>();
+        for (int c = 0; c < workplaceClasses.size(); c++) {
+            Point workplace = workplaceClasses.get(c).workplace;
+            g.addEdge(in(workplace), out(workplace), workplaceCounts.get(c));
+        }
+        addClasses(g, fruitReachedBy, workplaceClasses, workplaceCounts, true);
+        addClasses(g, meatReachedBy, workplaceClasses, workplaceCounts, false);
+        return g.build(engine);
+    }
+
+    /**
+     * Add a node pair for each class of the F (+fruit+) or M in +reachedBy+
+     * with the same W classes reaching them, an edge between it and each of
+     * those W classes, and one from the source or to the sink.
+     */
+    private static void addClasses(FlowGraph.Builder<Point> g, Map<Point, List<Integer>> reachedBy,
+                                   List<Workplace> workplaceClasses, List<Integer> workplaceCounts, boolean fruit) {
+        Map<List<Integer>, Point> first = new HashMap<>();
+        Map<Point, Integer> counts = new LinkedHashMap<>();
+        for (Map.Entry<Point, List<Integer>> entry : reachedBy.entrySet()) {
+            Point p = first.computeIfAbsent(entry.getValue(), classes -> entry.getKey());
+            counts.merge(p, 1, Integer::sum);
+        }
+
+        for (Map.Entry<Point, Integer> entry : counts.entrySet()) {
+            Point p = entry.getKey();
+            int count = entry.getValue();
+            g.addEdge(in(p), out(p), count);
+            if (fruit) {
+                g.addEdge(FLOW_SOURCE, in(p), count);
+            }
+            else {
+                g.addEdge(out(p), FLOW_SINK, count);
+            }
+            for (int c : reachedBy.get(p)) {
+                Point workplace = workplaceClasses.get(c).workplace;
+                int capacity = Math.min(count, workplaceCounts.get(c));
+                if (fruit) {
+                    g.addEdge(out(p), in(workplace), capacity);
+                }
+                else {
+                    g.addEdge(out(workplace), in(p), capacity);
+                }
+            }
+        }
+    }
+
+    /**
+     * The two nodes addEdge splits +p+ into.
+     */
+    private static Point in(Point p) {
+        return new Point(p.row, ~p.col);
+    }
+
+    private static Point out(Point p) {
+        return new Point(~p.row, p.col);
+    }
+
+    /**
+     * Time FlowGraph.maxFlow with every engine on the example worlds and on
+     * some larger random ones. Only the solve is timed, not building the
+     * graph; the searches are timed separately.
+     */
+    private static void benchmark() throws Exception {
+        List<String> names = new ArrayList<>();
+        List<World> worlds = new ArrayList<>();
+        for (String file : new String[] { "world6.txt", "world7.txt", "world8.txt", "world9.txt" }) {
+            names.add(file);
+            worlds.add(parseWorld(file));
+        }
+        for (int size : new int[] { 50, 80 }) {
+            names.add("random " + size + "x" + size);
+            worlds.add(randomWorld(size, size, 6, size));
+        }
+
+        for (int i = 0; i < worlds.size(); i++) {
+            // once to warm up, once to time
+            List<Point> starts = workplaceCells(worlds.get(i));
+            findWorkplacesOneByOne(worlds.get(i), starts);
+            long searchStart = System.nanoTime();
+            findWorkplacesOneByOne(worlds.get(i), starts);
+            long oneByOneMicros = (System.nanoTime() - searchStart) / 1000;
+            findWorkplacesBatched(worlds.get(i), starts);
+            searchStart = System.nanoTime();
+            findWorkplacesBatched(worlds.get(i), starts);
+            long batchedMicros = (System.nanoTime() - searchStart) / 1000;
+            findWorkplaces(worlds.get(i));
+            searchStart = System.nanoTime();
+            List<Workplace> workplaces = findWorkplaces(worlds.get(i));
+            long componentMicros = (System.nanoTime() - searchStart) / 1000;
+            System.out.println(names.get(i) + " searches: " + oneByOneMicros + " us one by one, " + batchedMicros
+                               + " us 64 at a time, " + componentMicros + " us with components");
+
+            // every graph for this world numbers its nodes the same way
+            NodeIndex<Point> index = new NodeIndex<>();
+            for (FlowGraph.Engine engine : FlowGraph.Engine.values()) {
+                // once to warm up, once to time
+                buildGraph(workplaces, engine, index).maxFlow(FLOW_SOURCE, FLOW_SINK);
+                FlowGraph<Point> g = buildGraph(workplaces, engine, index);
+                long start = System.nanoTime();
+                int antCount = g.maxFlow(FLOW_SOURCE, FLOW_SINK);
+                long micros = (System.nanoTime() - start) / 1000;
+                System.out.println(names.get(i) + " " + engine + ": count: " + antCount + " in " + micros + " us");
+            }
+
+            // once to warm up, once to time
+            buildGraph(workplaces, FlowGraph.Engine.DINIC, index).freeze().maxFlow(FLOW_SOURCE, FLOW_SINK);
+            CsrFlowGraph<Point> frozen = buildGraph(workplaces, FlowGraph.Engine.DINIC, index).freeze();
+            long start = System.nanoTime();
+            int frozenCount = frozen.maxFlow(FLOW_SOURCE, FLOW_SINK);
+            long micros = (System.nanoTime() - start) / 1000;
+            System.out.println(names.get(i) + " frozen CSR DINIC: count: " + frozenCount + " in " + micros + " us");
+
+            // once to warm up, once to time, building the graph included
+            // since compressing it is part of building it
+            buildCompressedGraph(workplaces, FlowGraph.Engine.DINIC).maxFlow(FLOW_SOURCE, FLOW_SINK);
+            start = System.nanoTime();
+            FlowGraph<Point> compressed = buildCompressedGraph(workplaces, FlowGraph.Engine.DINIC);
+            int compressedCount = compressed.maxFlow(FLOW_SOURCE, FLOW_SINK);
+            micros = (System.nanoTime() - start) / 1000;
+            buildGraph(workplaces, FlowGraph.Engine.DINIC, index).maxFlow(FLOW_SOURCE, FLOW_SINK);
+            start = System.nanoTime();
+            int uncompressedCount = buildGraph(workplaces, FlowGraph.Engine.DINIC, index).maxFlow(FLOW_SOURCE, FLOW_SINK);
+            long uncompressedMicros = (System.nanoTime() - start) / 1000;
+            System.out.println(names.get(i) + " compressed DINIC: count: " + compressedCount + " in " + micros
+                               + " us built and solved, " + uncompressedMicros + " us uncompressed ("
+                               + uncompressedCount + ")");
+
+            for (FlowGraph.PathSearch pathSearch : FlowGraph.PathSearch.values()) {
+                FlowGraph<Point> g = buildGraph(workplaces, FlowGraph.Engine.EDMONDS_KARP, index);
+                g.setPathSearch(pathSearch);
+                g.maxFlow(FLOW_SOURCE, FLOW_SINK);
+                System.out.println(names.get(i) + " " + pathSearch + " search: " + g.getNodesVisited() / g.getPathSearches()
+                                   + " nodes visited per path over " + g.getPathSearches() + " searches");
+            }
+
+            FlowGraph<Point> auto = buildGraph(workplaces, FlowGraph.Engine.AUTO, index);
+            auto.maxFlow(FLOW_SOURCE, FLOW_SINK);
+            System.out.println(names.get(i) + " AUTO picked " + auto.getLastSelection());
+
+            for (FlowGraph.Augmentation augmentation : FlowGraph.Augmentation.values()) {
+                FlowGraph<Point> g = buildGraph(workplaces, FlowGraph.Engine.EDMONDS_KARP, index);
+                g.setAugmentation(augmentation);
+                g.maxFlow(FLOW_SOURCE, FLOW_SINK);
+                System.out.println(names.get(i) + " " + augmentation + ": " + g.getPathSearches() + " searches");
+            }
+        }
+    }
+
+    /**
+     * A world with cells drawn at random: half grass, the rest split evenly
+     * between rocks, fruit, meat and workplaces.
+     */
+    private static World randomWorld(int numRows, int numCols, int maxDist, long seed) {
+        final String cells = "....XFMW";
+        Random random = new Random(seed);
+        char[][] matrix = new char[numRows][numCols];
+        for (int row = 0; row < numRows; row++) {
+            for (int col = 0; col < numCols; col++) {
+                matrix[row][col] = cells.charAt(random.nextInt(cells.length()));
+            }
+        }
+        return new World(numRows, numCols, maxDist, matrix);
+    }
+
+    /**
+     * Same answer as countAnts, but solved directly on the fruit/workplace/meat
+     * layers by LayeredMatcher instead of building a FlowGraph.
+     */
+    public static int countAntsLayered(World world) {
+        List<Workplace> workplaces = findWorkplaces(world);
+
+        Map<Point, Integer> fruitIds = new HashMap<>();
+        Map<Point, Integer> meatIds = new HashMap<>();
+        int[][] workplaceFruit = new int[workplaces.size()][];
+        int[][] workplaceMeat = new int[workplaces.size()][];
+        for (int w = 0; w < workplaces.size(); w++) {
+            workplaceFruit[w] = ids(workplaces.get(w).fruit, fruitIds);
+            workplaceMeat[w] = ids(workplaces.get(w).meat, meatIds);
+        }
+        return new LayeredMatcher(fruitIds.size(), meatIds.size(), workplaceFruit, workplaceMeat).maxAnts();
+    }
+
+    /**
+     * Number each point in +points+ by its position in +ids+, adding the ones
+     * seen for the first time.
+     */
+    private static int[] ids(Set<Point> points, Map<Point, Integer> ids) {
+        int[] result = new int[points.size()];
+        int i = 0;
+        for (Point p : points) {
+            Integer id = ids.get(p);
+            if (id == null) {
+                id = ids.size();
+                ids.put(p, id);
+            }
+            result[i++] = id;
+        }
+        return result;
+    }
+
+    /**
+     * Search from every W in the world.
+     */
+    private static List<Workplace> findWorkplaces(World world) {
+        List<Point> starts = workplaceCells(world);
+
+        // where K is too big to matter, a W reaches whatever its grass
+        // components touch; only the rest need searching
+        GrassComponents components = new GrassComponents(world);
+        Workplace[] found = new Workplace[starts.size()];
+        List<Point> rest = new ArrayList<>();
+        for (int i = 0; i < starts.size(); i++) {
+            found[i] = components.reach(starts.get(i));
+            if (found[i] == null) {
+                rest.add(starts.get(i));
+            }
+        }
+
+        // searches 64 at a time only pay off when they keep running into
+        // each other: when every cell is, on average, within K steps of a
+        // batch's worth of Ws
+        long k = Math.max(world.MAX_DIST, 1);
+        long inRange = Math.min(2 * k * (k + 1) + 1, world.cells.length);
+        boolean batched = rest.size() * inRange >= (long)Long.SIZE * world.cells.length;
+        List<Workplace> searched;
+        if (rest.size() * inRange >= PARALLEL_CELLS) {
+            searched = findWorkplacesParallel(world, rest, batched);
+        }
+        else {
+            searched = batched ? findWorkplacesBatched(world, rest) : findWorkplacesOneByOne(world, rest);
+        }
+
+        List<Workplace> workplaces = new ArrayList<>();
+        Iterator<Workplace> next = searched.iterator();
+        for (Workplace workplace : found) {
+            workplaces.add(workplace != null ? workplace : next.next());
+        }
+        return workplaces;
+    }
+
+    /**
+     * Every W in the world, row by row.
+     */
+    private static List<Point> workplaceCells(World world) {
+        List<Point> starts = new ArrayList<>();
+        for (int row = 0; row < world.NUM_ROWS; row++) {
+            for (int col = 0; col < world.NUM_COLS; col++) {
+                if (world.matrix[row][col] == WORKPLACE) {
+                    starts.add(new Point(row, col));
+                }
+            }
+        }
+        return starts;
+    }
+
+    // roughly how many cells the searches have to be able to visit before
+    // they're worth spreading over several threads
+    private static final long PARALLEL_CELLS = 1 << 20;
+
+    /**
+     * Same as findWorkplacesBatched, or findWorkplacesOneByOne if not
+     * +batched+, with the searches spread over the common ForkJoinPool.
+     * +starts+ is cut into one contiguous run per thread the pool has
+     * (whole batches of 64 when +batched+), and each task searches its run
+     * with scratch space of its own that is dropped when it's done. Tasks
+     * write what they find straight into the result's own slots, so they
+     * share nothing but the world, which they only read.
+     */
+    private static List<Workplace> findWorkplacesParallel(World world, List<Point> starts, boolean batched) {
+        Workplace[] found = new Workplace[starts.size()];
+        int unit = batched ? Long.SIZE : 1;
+        int units = (starts.size() + unit - 1) / unit;
+        int chunks = Math.max(1, Math.min(units, ForkJoinPool.getCommonPoolParallelism()));
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = (int)((long)chunk * units / chunks) * unit;
+            int to = Math.min((int)((long)(chunk + 1) * units / chunks) * unit, starts.size());
+            List<Point> run = starts.subList(from, to);
+            List<Workplace> workplaces = batched ? findWorkplacesBatched(world, run) : findWorkplacesOneByOne(world, run);
+            for (int i = from; i < to; i++) {
+                found[i] = workplaces.get(i - from);
+            }
+        });
+        return Arrays.asList(found);
+    }
+
+    /**
+     * Search from every one of +starts+, 64 at a time, see MultiSearch.
+     */
+    private static List<Workplace> findWorkplacesBatched(World world, List<Point> starts) {
+        List<Workplace> workplaces = new ArrayList<>();
+        MultiSearch search = new MultiSearch(world);
+        for (int i = 0; i < starts.size(); i += Long.SIZE) {
+            workplaces.addAll(search.search(starts.subList(i, Math.min(i + Long.SIZE, starts.size()))));
+        }
+        return workplaces;
+    }
+
+    /**
+     * Search from every one of +starts+ in turn.
+     */
+    private static List<Workplace> findWorkplacesOneByOne(World world, List<Point> starts) {
+        List<Workplace> workplaces = new ArrayList<>();
+        GridSearch search = new GridSearch(world);
+        for (Point start : starts) {
+            workplaces.add(search.search(start));
+        }
+        return workplaces;
+    }
+
+    /**
+     * True if +a+ and +b+ have the same workplaces, in the same order,
+     * reaching the same F and M.
+     */
+    private static boolean sameReach(List<Workplace> a, List<Workplace> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!a.get(i).workplace.equals(b.get(i).workplace) || !a.get(i).fruit.equals(b.get(i).fruit)
+                || !a.get(i).meat.equals(b.get(i).meat)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
      * Find all the F and M that can be reached from +workplace+
      */
     public static Workplace search(World world, Point start) {
-        Workplace workplace = new Workplace(start);
+        return new GridSearch(world).search(start);
+    }
+
+    /**
+     * Breadth-first search over the grass of one world, with cells numbered
+     * row * NUM_COLS + col. The queue and the visit stamps are sized for
+     * the whole world once and reused by every search: a cell counts as
+     * seen when its stamp is the current search's, so starting a new search
+     * is just bumping the stamp, and nothing is allocated per cell except
+     * the Points for the F and M found.
+     */
+    private static class GridSearch {
+        private final World world;
+        // each cell is queued at most once per search, so the queue never
+        // needs to wrap around
+        private final int[] queue;
+        private final int[] seen;
+        private int stamp;
+        private int tail;
 
-        // Use BFS to find all the fruit and meat that can be reached from 
-        // the given W.
-        Set<Point> visited = new HashSet<>();
+        GridSearch(World world) {
+            this.world = world;
+            queue = new int[world.cells.length];
+            seen = new int[world.cells.length];
+        }
 
-        Deque<Point> curQ = new LinkedList<>();
-        Deque<Point> nextQ = new LinkedList<>();
-        int curDist = 1;
-        
-        curQ.addFirst(workplace.workplace);
-        visited.add(workplace.workplace);
-
-        do {
-            Point p = curQ.removeLast();
-            Point[] neighbors = new Point[] {new Point(p.row-1, p.col),
-                                             new Point(p.row, p.col-1),
-                                             new Point(p.row, p.col+1),
-                                             new Point(p.row+1, p.col)};
-            for (Point next : neighbors) {
-                if (next.row >= 0 && next.row < world.NUM_ROWS && next.col >= 0 && next.col < world.NUM_COLS) {
-                    char item = world.matrix[next.row][next.col];
-                    if (item == MEAT) {
-                        workplace.meat.add(next);
+        /**
+         * Find all the F and M that can be reached from +start+
+         */
+        Workplace search(Point start) {
+            if (stamp == Integer.MAX_VALUE) {
+                Arrays.fill(seen, 0);
+                stamp = 0;
+            }
+            stamp++;
+
+            Workplace workplace = new Workplace(start);
+            int cols = world.NUM_COLS;
+            int size = world.cells.length;
+            int head = 0;
+            tail = 0;
+            int first = start.row * cols + start.col;
+            seen[first] = stamp;
+            queue[tail++] = first;
+
+            // level d holds the cells d - 1 steps from the W; expanding it
+            // finds the F and M d steps away. the first level always gets
+            // expanded, even when K is 0.
+            int levels = Math.max(world.MAX_DIST, 1);
+            for (int level = 1; level <= levels && head < tail; level++) {
+                int levelEnd = tail;
+                while (head < levelEnd) {
+                    int cell = queue[head++];
+                    int col = cell % cols;
+                    if (cell >= cols) {
+                        visit(cell - cols, workplace);
                     }
-                    else if (item == FRUIT) {
-                        workplace.fruit.add(next);
+                    if (col > 0) {
+                        visit(cell - 1, workplace);
                     }
-                    else if (item == GRASS && !visited.contains(next)) {
-                        visited.add(next);
-                        nextQ.addFirst(next);
+                    if (col + 1 < cols) {
+                        visit(cell + 1, workplace);
+                    }
+                    if (cell + cols < size) {
+                        visit(cell + cols, workplace);
                     }
                 }
             }
+            return workplace;
+        }
 
-            if (curQ.isEmpty()) {
-                curQ = nextQ;
-                nextQ = new LinkedList<>();
-                curDist++;
+        /**
+         * Queue +cell+ if it's grass, or record it in +workplace+ if it's F
+         * or M, unless this search has seen it already.
+         */
+        private void visit(int cell, Workplace workplace) {
+            if (seen[cell] == stamp) {
+                return;
             }
-        } while (curDist <= world.MAX_DIST && !curQ.isEmpty());
-        
-        return workplace;
+            char item = world.cells[cell];
+            if (item == GRASS) {
+                seen[cell] = stamp;
+                queue[tail++] = cell;
+            }
+            else if (item == FRUIT) {
+                seen[cell] = stamp;
+                workplace.fruit.add(new Point(cell / world.NUM_COLS, cell % world.NUM_COLS));
+            }
+            else if (item == MEAT) {
+                seen[cell] = stamp;
+                workplace.meat.add(new Point(cell / world.NUM_COLS, cell % world.NUM_COLS));
+            }
+        }
+    }
+
+    /**
+     * Breadth-first search from up to 64 workplaces at once, all sharing
+     * one pass over the grid (multi-source BFS). Bit i of a mask stands for
+     * the i-th workplace: a cell's seen mask says which searches have
+     * reached it, and each cell on a level's frontier carries the searches
+     * that got there on that level, so expanding it moves all of them a
+     * step with a few long operations. Searches that reach a cell on the
+     * same level share one expansion of it.
+     *
+     * Every search still stops after K levels and finds the same F and M
+     * as GridSearch would on its own. Scratch space is sized for the whole
+     * world once; only the cells a pass touched are cleared after it.
+     */
+    private static class MultiSearch {
+        private final World world;
+        // for grass, which searches reached the cell; for F and M, which
+        // found it
+        private final long[] seen;
+        // which searches reached a cell on the level being expanded, until
+        // the level is done
+        private final long[] next;
+        private int[] current;
+        private long[] currentBits;
+        private int[] upcoming;
+        private long[] upcomingBits;
+        private int upcomingCount;
+        private final int[] touched;
+        private int touchedCount;
+
+        MultiSearch(World world) {
+            this.world = world;
+            int size = world.cells.length;
+            seen = new long[size];
+            next = new long[size];
+            current = new int[size];
+            currentBits = new long[size];
+            upcoming = new int[size];
+            upcomingBits = new long[size];
+            touched = new int[size];
+        }
+
+        /**
+         * The F and M reachable from each of +starts+, at most 64 of them,
+         * in the same order.
+         */
+        List<Workplace> search(List<Point> starts) {
+            int cols = world.NUM_COLS;
+            int size = world.cells.length;
+            int currentCount = 0;
+            touchedCount = 0;
+            for (int i = 0; i < starts.size(); i++) {
+                int cell = starts.get(i).row * cols + starts.get(i).col;
+                seen[cell] = 1L << i;
+                current[currentCount] = cell;
+                currentBits[currentCount++] = 1L << i;
+                touched[touchedCount++] = cell;
+            }
+
+            // as in GridSearch, level d expands the cells d - 1 steps out
+            int levels = Math.max(world.MAX_DIST, 1);
+            for (int level = 1; level <= levels && currentCount > 0; level++) {
+                upcomingCount = 0;
+                for (int i = 0; i < currentCount; i++) {
+                    int cell = current[i];
+                    long bits = currentBits[i];
+                    int col = cell % cols;
+                    if (cell >= cols) {
+                        visit(cell - cols, bits);
+                    }
+                    if (col > 0) {
+                        visit(cell - 1, bits);
+                    }
+                    if (col + 1 < cols) {
+                        visit(cell + 1, bits);
+                    }
+                    if (cell + cols < size) {
+                        visit(cell + cols, bits);
+                    }
+                }
+
+                for (int i = 0; i < upcomingCount; i++) {
+                    upcomingBits[i] = next[upcoming[i]];
+                    next[upcoming[i]] = 0;
+                }
+                int[] swap = current;
+                current = upcoming;
+                upcoming = swap;
+                long[] swapBits = currentBits;
+                currentBits = upcomingBits;
+                upcomingBits = swapBits;
+                currentCount = upcomingCount;
+            }
+
+            List<Workplace> workplaces = new ArrayList<>();
+            for (Point start : starts) {
+                workplaces.add(new Workplace(start));
+            }
+            for (int i = 0; i < touchedCount; i++) {
+                int cell = touched[i];
+                char item = world.cells[cell];
+                if (item == FRUIT || item == MEAT) {
+                    Point p = new Point(cell / cols, cell % cols);
+                    for (long bits = seen[cell]; bits != 0; bits &= bits - 1) {
+                        Workplace workplace = workplaces.get(Long.numberOfTrailingZeros(bits));
+                        (item == FRUIT ? workplace.fruit : workplace.meat).add(p);
+                    }
+                }
+                seen[cell] = 0;
+            }
+            return workplaces;
+        }
+
+        /**
+         * Move the searches in +bits+ onto +cell+: queue it for the next
+         * level with the ones that haven't reached it yet if it's grass, or
+         * record it as found by all of them if it's F or M.
+         */
+        private void visit(int cell, long bits) {
+            char item = world.cells[cell];
+            if (item == GRASS) {
+                long fresh = bits & ~seen[cell];
+                if (fresh != 0) {
+                    if (seen[cell] == 0) {
+                        touched[touchedCount++] = cell;
+                    }
+                    if (next[cell] == 0) {
+                        upcoming[upcomingCount++] = cell;
+                    }
+                    seen[cell] |= fresh;
+                    next[cell] |= fresh;
+                }
+            }
+            else if (item == FRUIT || item == MEAT) {
+                if (seen[cell] == 0) {
+                    touched[touchedCount++] = cell;
+                }
+                seen[cell] |= bits;
+            }
+        }
+    }
+
+    /**
+     * The 4-connected components of the world's grass that Ws touch. From a
+     * grass cell next to a W, every other cell of its component is a path
+     * of at most size - 1 more steps away, so when K is at least size + 1
+     * the W reaches every F and M the component touches, however the
+     * component is shaped, without searching.
+     *
+     * Components are labelled the first time a W needs them, and labelling
+     * gives up once a component is too big for that, so the whole thing
+     * costs O(N * M) at most, and only O(K) for a W next to a big component.
+     * The F and M a component touches are collected once, by the first W
+     * that gets them from it.
+     */
+    private static class GrassComponents {
+        private final World world;
+        private final int levels;
+        // per cell, its component, or -1 if it isn't grass or isn't
+        // labelled yet
+        private final int[] component;
+        // the cells of component c are cells[first[c]] up to
+        // cells[first[c] + size[c]]; a component too big to take a W's
+        // search's place has size TOO_BIG, and only some of its cells
+        private final int[] cells;
+        private final int[] first;
+        private final int[] size;
+        private int count;
+        private int tail;
+        private boolean partOfBig;
+        // the F and M each component touches, once collected
+        private final List<List<Point>> fruit = new ArrayList<>();
+        private final List<List<Point>> meat = new ArrayList<>();
+        // the last component each F and M was added to
+        private final int[] touchedBy;
+
+        private static final int TOO_BIG = Integer.MAX_VALUE;
+
+        GrassComponents(World world) {
+            this.world = world;
+            levels = Math.max(world.MAX_DIST, 1);
+            int cells = world.cells.length;
+            component = new int[cells];
+            Arrays.fill(component, -1);
+            this.cells = new int[cells];
+            first = new int[cells];
+            size = new int[cells];
+            touchedBy = new int[cells];
+            Arrays.fill(touchedBy, -1);
+        }
+
+        /**
+         * The F and M +start+ reaches, or null if K might stop it short of
+         * some of them and it has to be searched.
+         */
+        Workplace reach(Point start) {
+            int cols = world.NUM_COLS;
+            int cell = start.row * cols + start.col;
+            int[] neighbors = {
+                start.row > 0 ? cell - cols : -1,
+                start.col > 0 ? cell - 1 : -1,
+                start.col + 1 < cols ? cell + 1 : -1,
+                start.row + 1 < world.NUM_ROWS ? cell + cols : -1
+            };
+            for (int next : neighbors) {
+                if (next >= 0 && world.cells[next] == GRASS) {
+                    if (component[next] < 0) {
+                        label(next);
+                    }
+                    if (size[component[next]] == TOO_BIG) {
+                        return null;
+                    }
+                }
+            }
+
+            Workplace workplace = new Workplace(start);
+            for (int next : neighbors) {
+                if (next < 0) {
+                    continue;
+                }
+                char item = world.cells[next];
+                if (item == FRUIT) {
+                    workplace.fruit.add(new Point(next / cols, next % cols));
+                }
+                else if (item == MEAT) {
+                    workplace.meat.add(new Point(next / cols, next % cols));
+                }
+                else if (item == GRASS) {
+                    int c = component[next];
+                    if (fruit.get(c) == null) {
+                        collect(c);
+                    }
+                    workplace.fruit.addAll(fruit.get(c));
+                    workplace.meat.addAll(meat.get(c));
+                }
+            }
+            return workplace;
+        }
+
+        /**
+         * Label the component around grass cell +start+, stopping as soon
+         * as it has levels cells, which is too many.
+         */
+        private void label(int start) {
+            int cols = world.NUM_COLS;
+            int c = count++;
+            first[c] = tail;
+            partOfBig = false;
+            int head = tail;
+            component[start] = c;
+            cells[tail++] = start;
+            while (head < tail && tail - first[c] < levels) {
+                int cell = cells[head++];
+                int col = cell % cols;
+                if (cell >= cols) {
+                    label(cell - cols, c);
+                }
+                if (col > 0) {
+                    label(cell - 1, c);
+                }
+                if (col + 1 < cols) {
+                    label(cell + 1, c);
+                }
+                if (cell + cols < world.cells.length) {
+                    label(cell + cols, c);
+                }
+            }
+            size[c] = tail - first[c] < levels && !partOfBig ? tail - first[c] : TOO_BIG;
+            fruit.add(null);
+            meat.add(null);
+        }
+
+        /**
+         * Add +cell+ to component +c+ if it's grass that has none yet. Grass
+         * that already has another component can only be the part of a
+         * component labelling gave up on, which +c+ must then belong to.
+         */
+        private void label(int cell, int c) {
+            if (world.cells[cell] == GRASS) {
+                if (component[cell] < 0) {
+                    component[cell] = c;
+                    cells[tail++] = cell;
+                }
+                else if (component[cell] != c) {
+                    partOfBig = true;
+                }
+            }
+        }
+
+        /**
+         * Find the F and M component +c+ touches.
+         */
+        private void collect(int c) {
+            List<Point> componentFruit = new ArrayList<>();
+            List<Point> componentMeat = new ArrayList<>();
+            int cols = world.NUM_COLS;
+            for (int i = first[c]; i < first[c] + size[c]; i++) {
+                int cell = cells[i];
+                int col = cell % cols;
+                int[] neighbors = {
+                    cell >= cols ? cell - cols : -1,
+                    col > 0 ? cell - 1 : -1,
+                    col + 1 < cols ? cell + 1 : -1,
+                    cell + cols < world.cells.length ? cell + cols : -1
+                };
+                for (int next : neighbors) {
+                    if (next < 0 || touchedBy[next] == c) {
+                        continue;
+                    }
+                    char item = world.cells[next];
+                    if (item == FRUIT || item == MEAT) {
+                        touchedBy[next] = c;
+                        (item == FRUIT ? componentFruit : componentMeat).add(new Point(next / cols, next % cols));
+                    }
+                }
+            }
+            fruit.set(c, componentFruit);
+            meat.set(c, componentMeat);
+        }
     }
 
     /**
      * Simulate node capacity by replacing each node (besides our ultimate source and sink)
      * with a pair of nodes that have a single edge between them with a capacity of 1.
      */
-    private static void addEdge(FlowGraph<Point> g, Point flowSource, Point flowSink, Point newSource, Point newSink) {
-        Point newSourceIn = new Point(newSource.row, ~newSource.col);
-        Point newSourceOut = new Point(~newSource.row, newSource.col);
+    private static void addEdge(FlowGraph.Builder<Point> g, Point flowSource, Point flowSink, Point newSource, Point newSink) {
+        Point newSourceIn = in(newSource);
+        Point newSourceOut = out(newSource);
 
-        Point newSinkIn = new Point(newSink.row, ~newSink.col);
-        Point newSinkOut = new Point(~newSink.row, newSink.col);
+        Point newSinkIn = in(newSink);
+        Point newSinkOut = out(newSink);
 
         if (newSource.equals(flowSource) && newSink.equals(flowSink)) {
             g.addEdge(newSource, newSink, 1);
@@ -239,11 +1033,19 @@ class AntWorld {
         public final int NUM_COLS;
         public final int MAX_DIST;
         public final char[][] matrix;
+        // the matrix row after row, cell row * NUM_COLS + col, for
+        // GridSearch. cells past the end of a short row are left as 0,
+        // which nothing can walk on.
+        public final char[] cells;
         public World(int numRows, int numCols, int maxDist, char[][] matrix) {
             NUM_ROWS = numRows;
             NUM_COLS = numCols;
             MAX_DIST = maxDist;
             this.matrix = matrix;
+            cells = new char[numRows * numCols];
+            for (int row = 0; row < numRows; row++) {
+                System.arraycopy(matrix[row], 0, cells, row * numCols, Math.min(numCols, matrix[row].length));
+            }
         }
     }
 
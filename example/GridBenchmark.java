@@ -0,0 +1,272 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Times every FlowGraph engine, an OffHeapFlowGraph and a MappedFlowGraph on
+ * segmentation style grids: one node per pixel, edges both ways between
+ * 4-connected neighbours, and a link from the source and one to the sink on
+ * every pixel, all with random capacities. Also times answering many
+ * pixel to pixel queries on one grid, with and without building it again,
+ * and checks that augmenting paths allocate nothing once set up, and that
+ * maxFlow and maxFlowValue agree however they follow each other, and that
+ * the engines agree on small graphs with parallel edges.
+ *
+ * Usage: java -ea -cp .:.. GridBenchmark [size...]
+ */
+class GridBenchmark {
+    public static void main(String [] args) throws IOException {
+        int[] sizes = {25, 50};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        repeatedSolves(FlowGraph.Engine.values());
+        parallelEdges(FlowGraph.Engine.values());
+
+        // let the JIT see every engine once before timing anything
+        for (FlowGraph.Engine engine : FlowGraph.Engine.values()) {
+            grid(20, engine).maxFlow(SOURCE, SINK);
+        }
+
+        for (int size : sizes) {
+            Integer expected = null;
+            for (FlowGraph.Engine engine : FlowGraph.Engine.values()) {
+                FlowGraph<Integer> g = grid(size, engine);
+                long start = System.nanoTime();
+                int flow = g.maxFlow(SOURCE, SINK);
+                long millis = (System.nanoTime() - start) / 1000000;
+
+                System.out.println(size + "x" + size + " " + engine + ": flow " + flow + " in " + millis + " ms");
+                if (expected == null) {
+                    expected = flow;
+                }
+                assert flow == expected : engine + " disagrees on " + size + "x" + size;
+            }
+
+            OffHeapFlowGraph offHeap = offHeapGrid(size);
+            long start = System.nanoTime();
+            int flow = offHeap.maxFlow(size * size, size * size + 1);
+            long millis = (System.nanoTime() - start) / 1000000;
+            System.out.println(size + "x" + size + " off heap DINIC: flow " + flow + " in " + millis + " ms");
+            assert flow == expected : "off heap graph disagrees on " + size + "x" + size;
+
+            // the same graph again, saved and solved from the file
+            Path file = Files.createTempFile("grid", ".flow");
+            offHeapGrid(size).save(file);
+            start = System.nanoTime();
+            MappedFlowGraph mapped = MappedFlowGraph.open(file);
+            long openMicros = (System.nanoTime() - start) / 1000;
+            flow = mapped.maxFlow(size * size, size * size + 1);
+            millis = (System.nanoTime() - start) / 1000000;
+            System.out.println(size + "x" + size + " mapped DINIC: flow " + flow + " in " + millis + " ms, "
+                               + openMicros + " us of it opening " + Files.size(file) + " bytes");
+            assert flow == expected : "mapped graph disagrees on " + size + "x" + size;
+            Files.delete(file);
+
+            repeatedQueries(size);
+            augmentationAllocation(size);
+        }
+    }
+
+    /**
+     * Check that once AugmentingPaths is set up, a whole max flow with it
+     * allocates nothing. The first run on a fresh instance lets the JIT
+     * compile the loop; the flows are reset and the second run is measured.
+     */
+    private static void augmentationAllocation(int size) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return;
+        }
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        for (FlowGraph.PathSearch pathSearch : FlowGraph.PathSearch.values()) {
+            FlowGraph<Integer> g = grid(size, FlowGraph.Engine.EDMONDS_KARP);
+            AugmentingPaths<Integer> paths = new AugmentingPaths<>(g, pathSearch);
+            paths.augment(SOURCE, SINK, 1);
+            g.resetFlows();
+
+            long before = threads.getCurrentThreadAllocatedBytes();
+            paths.augment(SOURCE, SINK, 1);
+            long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+            System.out.println(size + "x" + size + " " + pathSearch + " augmenting paths: " + allocated + " bytes allocated");
+            assert allocated == 0 : pathSearch + " augmenting paths allocated " + allocated + " bytes on " + size + "x" + size;
+        }
+    }
+
+    /**
+     * Time QUERIES max flows between random pairs of pixels on one grid,
+     * building the graph again for every query, resetting its flows
+     * instead, and resetting a frozen copy.
+     */
+    private static void repeatedQueries(int size) {
+        Random random = new Random(size);
+        int[] sources = new int[QUERIES];
+        int[] sinks = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            sources[i] = random.nextInt(size * size);
+            sinks[i] = (sources[i] + 1 + random.nextInt(size * size - 1)) % (size * size);
+        }
+
+        int[] flows = new int[QUERIES];
+        long start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            flows[i] = grid(size, FlowGraph.Engine.DINIC).maxFlow(sources[i], sinks[i]);
+        }
+        long rebuildMillis = (System.nanoTime() - start) / 1000000;
+
+        FlowGraph<Integer> g = grid(size, FlowGraph.Engine.DINIC);
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            g.resetFlows();
+            int flow = g.maxFlow(sources[i], sinks[i]);
+            assert flow == flows[i] : "reset graph disagrees on query " + i;
+        }
+        long resetMillis = (System.nanoTime() - start) / 1000000;
+
+        CsrFlowGraph<Integer> frozen = g.freeze();
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            frozen.resetFlows();
+            int flow = frozen.maxFlow(sources[i], sinks[i]);
+            assert flow == flows[i] : "reset frozen graph disagrees on query " + i;
+        }
+        long frozenMillis = (System.nanoTime() - start) / 1000000;
+
+        System.out.println(size + "x" + size + " " + QUERIES + " queries: " + rebuildMillis + " ms rebuilding, "
+                           + resetMillis + " ms resetting, " + frozenMillis + " ms resetting frozen");
+    }
+
+    /**
+     * Solve a small graph with max flow 3 twice with maxFlowValue and then
+     * twice with maxFlow, and the other way round, on every one of
+     * +engines+. Each solve builds on what the one before left in the
+     * graph, which after maxFlowValue isn't necessarily a flow.
+     */
+    private static void repeatedSolves(FlowGraph.Engine[] engines) {
+        for (FlowGraph.Engine engine : engines) {
+            for (boolean valueFirst : new boolean[] {true, false}) {
+                FlowGraph<Integer> g = new FlowGraph<>(engine);
+                g.addEdge(0, 1, 3);
+                g.addEdge(1, 2, 2);
+                g.addEdge(0, 2, 1);
+                g.addEdge(2, 3, 5);
+                for (int i = 0; i < 4; i++) {
+                    boolean value = (i < 2) == valueFirst;
+                    int flow = value ? g.maxFlowValue(0, 3) : g.maxFlow(0, 3);
+                    assert flow == 3 : engine + (value ? " maxFlowValue" : " maxFlow") + " returned " + flow
+                                       + " on solve " + (i + 1) + (valueFirst ? ", values first" : ", flows first");
+                }
+            }
+        }
+    }
+
+    /**
+     * Check +engines+, with every PathSearch, against EDMONDS_KARP's
+     * forward BFS on small random graphs where some node pairs get several
+     * edges, with different capacities and in both directions.
+     */
+    private static void parallelEdges(FlowGraph.Engine[] engines) {
+        Random random = new Random(1);
+        for (int graph = 0; graph < 1000; graph++) {
+            int n = 3 + random.nextInt(8);
+            List<int[]> edges = new ArrayList<>();
+            for (int i = 0; i < 4 * n; i++) {
+                int u = random.nextInt(n);
+                int v = (u + 1 + random.nextInt(n - 1)) % n;
+                edges.add(new int[] {u, v, random.nextInt(6)});
+                if (random.nextInt(3) == 0) {
+                    edges.add(new int[] {u, v, random.nextInt(6)});
+                }
+                if (random.nextInt(5) == 0) {
+                    edges.add(new int[] {v, u, random.nextInt(6)});
+                }
+            }
+
+            FlowGraph<Integer> reference = new FlowGraph<>(FlowGraph.Engine.EDMONDS_KARP);
+            for (int[] e : edges) {
+                reference.addEdge(e[0], e[1], e[2]);
+            }
+            int expected = reference.maxFlow(0, n - 1);
+
+            for (FlowGraph.Engine engine : engines) {
+                for (FlowGraph.PathSearch pathSearch : FlowGraph.PathSearch.values()) {
+                    for (boolean value : new boolean[] {false, true}) {
+                        FlowGraph<Integer> g = new FlowGraph<>(engine);
+                        g.setPathSearch(pathSearch);
+                        for (int[] e : edges) {
+                            g.addEdge(e[0], e[1], e[2]);
+                        }
+                        int flow = value ? g.maxFlowValue(0, n - 1) : g.maxFlow(0, n - 1);
+                        assert flow == expected : engine + " " + pathSearch + (value ? " maxFlowValue" : " maxFlow")
+                                                  + " returned " + flow + " instead of " + expected
+                                                  + " on parallel edge graph " + graph;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final int QUERIES = 20;
+
+    private static final Integer SOURCE = -1;
+    private static final Integer SINK = -2;
+
+    /**
+     * The same +size+ x +size+ grid every time for a given size, so engines
+     * can be compared.
+     */
+    private static FlowGraph<Integer> grid(int size, FlowGraph.Engine engine) {
+        Random random = new Random(size);
+        FlowGraph<Integer> g = new FlowGraph<>(engine);
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int pixel = row * size + col;
+                if (col + 1 < size) {
+                    g.addEdge(pixel, pixel + 1, 1 + random.nextInt(10));
+                    g.addEdge(pixel + 1, pixel, 1 + random.nextInt(10));
+                }
+                if (row + 1 < size) {
+                    g.addEdge(pixel, pixel + size, 1 + random.nextInt(10));
+                    g.addEdge(pixel + size, pixel, 1 + random.nextInt(10));
+                }
+                g.addEdge(SOURCE, pixel, 1 + random.nextInt(20));
+                g.addEdge(pixel, SINK, 1 + random.nextInt(20));
+            }
+        }
+        return g;
+    }
+
+    /**
+     * The same grid as grid(+size+, ...) in an OffHeapFlowGraph, with the
+     * source and sink numbered size * size and size * size + 1.
+     */
+    private static OffHeapFlowGraph offHeapGrid(int size) {
+        Random random = new Random(size);
+        int source = size * size;
+        int sink = size * size + 1;
+        OffHeapFlowGraph.Builder g = new OffHeapFlowGraph.Builder();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int pixel = row * size + col;
+                if (col + 1 < size) {
+                    g.addEdge(pixel, pixel + 1, 1 + random.nextInt(10));
+                    g.addEdge(pixel + 1, pixel, 1 + random.nextInt(10));
+                }
+                if (row + 1 < size) {
+                    g.addEdge(pixel, pixel + size, 1 + random.nextInt(10));
+                    g.addEdge(pixel + size, pixel, 1 + random.nextInt(10));
+                }
+                g.addEdge(source, pixel, 1 + random.nextInt(20));
+                g.addEdge(pixel, sink, 1 + random.nextInt(20));
+            }
+        }
+        return g.build();
+    }
+}
@@ -0,0 +1,287 @@
+import java.util.Arrays;
+
+/**
+ * Max flow for the one network shape AntWorld builds: an ultimate source
+ * feeding every fruit, fruit to the workplaces that reach it, workplaces to
+ * the meat they reach, and every meat to the ultimate sink, with every node
+ * able to carry one unit. That's the same answer FlowGraph.maxFlow gives for
+ * the split-node graph, without building it.
+ *
+ * The flow is kept as who is paired with whom (fruitOf, meatOf and their
+ * inverses) and the residual edges are derived from that on the fly:
+ *
+ *   fruit f      -> workplace w (in)   if w's fruit isn't f already
+ *   workplace in -> workplace out      if w is unused
+ *   workplace in -> its fruit          if w is used (undo that pairing)
+ *   workplace out-> meat m             if w's meat isn't m already
+ *   workplace out-> workplace in       if w is used
+ *   meat m       -> sink               if m is unused
+ *   meat m       -> its workplace out  if m is used (undo that pairing)
+ *
+ * Like Hopcroft-Karp, each phase runs one BFS from all unused fruit to find
+ * the length of the shortest augmenting path, then a DFS pushes a maximal
+ * set of node-disjoint paths of that length before searching again.
+ */
+class LayeredMatcher {
+    private static final int NONE = -1;
+    private static final int SKIP = -2;
+
+    private final int numFruit;
+    private final int numWorkplaces;
+    private final int numMeat;
+    private final int[][] fruitWorkplaces;
+    private final int[][] workplaceMeat;
+
+    // search nodes: fruit, then workplace in, workplace out, meat, then the sink
+    private final int workplaceIn;
+    private final int workplaceOut;
+    private final int meatStart;
+    private final int sink;
+
+    private final int[] fruitOf;
+    private final int[] meatOf;
+    private final int[] workplaceOfFruit;
+    private final int[] workplaceOfMeat;
+
+    private final int[] level;
+    private final int[] currentArc;
+    private final int[] queue;
+    private final int[] path;
+
+    /**
+     * +workplaceFruit+[w] and +workplaceMeat+[w] list the fruit and meat ids
+     * workplace w can reach. Fruit ids must be below +numFruit+ and meat ids
+     * below +numMeat+.
+     */
+    LayeredMatcher(int numFruit, int numMeat, int[][] workplaceFruit, int[][] workplaceMeat) {
+        this.numFruit = numFruit;
+        this.numWorkplaces = workplaceFruit.length;
+        this.numMeat = numMeat;
+        this.workplaceMeat = workplaceMeat;
+        this.fruitWorkplaces = invert(workplaceFruit, numFruit);
+
+        workplaceIn = numFruit;
+        workplaceOut = workplaceIn + numWorkplaces;
+        meatStart = workplaceOut + numWorkplaces;
+        sink = meatStart + numMeat;
+
+        fruitOf = filled(numWorkplaces);
+        meatOf = filled(numWorkplaces);
+        workplaceOfFruit = filled(numFruit);
+        workplaceOfMeat = filled(numMeat);
+
+        level = new int[sink + 1];
+        currentArc = new int[sink + 1];
+        queue = new int[sink + 1];
+        path = new int[sink + 1];
+    }
+
+    /**
+     * How many fruit, workplace, meat triples can be formed at once.
+     */
+    int maxAnts() {
+        int ants = 0;
+        while (buildLevels()) {
+            Arrays.fill(currentArc, 0);
+            for (int f = 0; f < numFruit; f++) {
+                if (workplaceOfFruit[f] == NONE && level[f] == 0 && augment(f)) {
+                    ants++;
+                }
+            }
+        }
+        return ants;
+    }
+
+    /**
+     * BFS from every unused fruit. Returns false once no unused meat can be
+     * reached, i.e. the flow is maximal.
+     */
+    private boolean buildLevels() {
+        Arrays.fill(level, NONE);
+        int head = 0;
+        int tail = 0;
+        for (int f = 0; f < numFruit; f++) {
+            if (workplaceOfFruit[f] == NONE) {
+                level[f] = 0;
+                queue[tail++] = f;
+            }
+        }
+
+        while (head < tail) {
+            int u = queue[head++];
+            if (level[sink] != NONE && level[u] >= level[sink]) {
+                // only the shortest paths are wanted this phase
+                break;
+            }
+            for (int i = 0; ; i++) {
+                int v = neighbor(u, i);
+                if (v == NONE) {
+                    break;
+                }
+                if (v != SKIP && level[v] == NONE) {
+                    level[v] = level[u] + 1;
+                    if (v != sink) {
+                        queue[tail++] = v;
+                    }
+                }
+            }
+        }
+        return level[sink] != NONE;
+    }
+
+    /**
+     * Walk admissible edges from fruit +start+ until the sink is reached,
+     * backing out of (and killing) dead ends. Returns true if a path was
+     * found and the pairings along it were flipped.
+     */
+    private boolean augment(int start) {
+        int depth = 0;
+        path[0] = start;
+        while (true) {
+            int u = path[depth];
+            if (u == sink) {
+                flip(depth);
+                return true;
+            }
+
+            int v = NONE;
+            while (true) {
+                int candidate = neighbor(u, currentArc[u]);
+                if (candidate == NONE) {
+                    break;
+                }
+                if (candidate != SKIP && level[candidate] == level[u] + 1) {
+                    v = candidate;
+                    break;
+                }
+                currentArc[u]++;
+            }
+
+            if (v != NONE) {
+                path[++depth] = v;
+                continue;
+            }
+
+            // dead end: nothing from u reaches the sink in this phase
+            level[u] = NONE;
+            if (depth == 0) {
+                return false;
+            }
+            depth--;
+            currentArc[path[depth]]++;
+        }
+    }
+
+    /**
+     * Apply the augmenting path in +path+[0..+depth+] to the pairings.
+     */
+    private void flip(int depth) {
+        for (int i = 0; i < depth; i++) {
+            int u = path[i];
+            int v = path[i + 1];
+            if (u < workplaceIn) {
+                // fruit -> workplace in
+                int w = v - workplaceIn;
+                fruitOf[w] = u;
+                workplaceOfFruit[u] = w;
+            }
+            else if (u < workplaceOut) {
+                if (v < workplaceIn) {
+                    // workplace in -> its old fruit
+                    int w = u - workplaceIn;
+                    if (fruitOf[w] == v) {
+                        fruitOf[w] = NONE;
+                    }
+                    if (workplaceOfFruit[v] == w) {
+                        workplaceOfFruit[v] = NONE;
+                    }
+                }
+            }
+            else if (u < meatStart) {
+                if (v >= meatStart) {
+                    // workplace out -> meat
+                    int w = u - workplaceOut;
+                    int m = v - meatStart;
+                    meatOf[w] = m;
+                    workplaceOfMeat[m] = w;
+                }
+            }
+            else if (v != sink) {
+                // meat -> its old workplace out
+                int m = u - meatStart;
+                int w = v - workplaceOut;
+                if (meatOf[w] == m) {
+                    meatOf[w] = NONE;
+                }
+                if (workplaceOfMeat[m] == w) {
+                    workplaceOfMeat[m] = NONE;
+                }
+            }
+        }
+    }
+
+    /**
+     * Where the +i+th edge out of search node +u+ leads: SKIP if it has no
+     * residual capacity right now, NONE once i is past the last edge.
+     */
+    private int neighbor(int u, int i) {
+        if (u < workplaceIn) {
+            int[] out = fruitWorkplaces[u];
+            if (i >= out.length) {
+                return NONE;
+            }
+            return fruitOf[out[i]] == u ? SKIP : workplaceIn + out[i];
+        }
+        if (u < workplaceOut) {
+            int w = u - workplaceIn;
+            if (i > 0) {
+                return NONE;
+            }
+            return fruitOf[w] == NONE ? workplaceOut + w : fruitOf[w];
+        }
+        if (u < meatStart) {
+            int w = u - workplaceOut;
+            int[] out = workplaceMeat[w];
+            if (i < out.length) {
+                return meatOf[w] == out[i] ? SKIP : meatStart + out[i];
+            }
+            if (i == out.length && fruitOf[w] != NONE) {
+                return workplaceIn + w;
+            }
+            return NONE;
+        }
+        if (u < sink) {
+            int m = u - meatStart;
+            if (i > 0) {
+                return NONE;
+            }
+            return workplaceOfMeat[m] == NONE ? sink : workplaceOut + workplaceOfMeat[m];
+        }
+        return NONE;
+    }
+
+    private static int[][] invert(int[][] lists, int size) {
+        int[] counts = new int[size];
+        for (int[] list : lists) {
+            for (int x : list) {
+                counts[x]++;
+            }
+        }
+        int[][] inverted = new int[size][];
+        for (int x = 0; x < size; x++) {
+            inverted[x] = new int[counts[x]];
+        }
+        for (int i = 0; i < lists.length; i++) {
+            for (int x : lists[i]) {
+                inverted[x][--counts[x]] = i;
+            }
+        }
+        return inverted;
+    }
+
+    private static int[] filled(int size) {
+        int[] a = new int[size];
+        Arrays.fill(a, NONE);
+        return a;
+    }
+}